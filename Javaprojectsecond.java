@@ -1,24 +1,101 @@
 import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Random;
+import java.util.Map;
+import java.util.SplittableRandom;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+import jdk.jfr.consumer.RecordingStream;
 import javax.swing.*;
 
 public class Javaprojectsecond {    
+    /**
+     * Derives independent, reproducible random streams from one master seed per run.
+     * A stream depends only on (master seed, room id, purpose), never on thread count or creation order.
+     */
+    static final class SimulationSeeds {
+        static final int STREAM_OCCUPANCY = 0;
+        static final int STREAM_TEMPERATURE = 1;
+        static final int STREAM_HUMIDITY = 2;
+        private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+        private SimulationSeeds() {}
+
+        static SplittableRandom stream(long masterSeed, long roomId, int purpose) {
+            return new SplittableRandom(streamSeed(masterSeed, roomId, purpose));
+        }
+
+        // Initial state of the stream, for engines that step SplittableRandom's generator inline
+        static long streamSeed(long masterSeed, long roomId, int purpose) {
+            long seed = mix64(masterSeed + GOLDEN_GAMMA * (roomId + 1));
+            return mix64(seed + GOLDEN_GAMMA * (purpose + 1));
+        }
+
+        // Fresh master seed for interactive runs that do not ask for reproducibility
+        static long randomMasterSeed() {
+            return new SplittableRandom().nextLong();
+        }
+
+        // SplitMix64 finaliser
+        static long mix64(long z) {
+            z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+            z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+            return z ^ (z >>> 31);
+        }
+    }
+
     // Grouped: Sensor classes
     /**
      * Simulates a temperature sensor with random fluctuations.
      */
     static class TemperatureSensor {
         private double temperature;
-        private Random random;
+        private final SplittableRandom random;
         public TemperatureSensor(double baseTemp) {
-            random = new Random();
+            this(baseTemp, new SplittableRandom());
+        }
+        public TemperatureSensor(double baseTemp, SplittableRandom random) {
+            this.random = random;
             temperature = baseTemp;
         }
         public double getTemperature() {
@@ -32,9 +109,12 @@ public class Javaprojectsecond {
     }
     static class HumidityCalculator {
         private double humidity;
-        private Random random;
+        private final SplittableRandom random;
         public HumidityCalculator(double baseHumidity) {
-            random = new Random();
+            this(baseHumidity, new SplittableRandom());
+        }
+        public HumidityCalculator(double baseHumidity, SplittableRandom random) {
+            this.random = random;
             humidity = baseHumidity;
         }
         public double getHumidity() {
@@ -50,17 +130,34 @@ public class Javaprojectsecond {
     // Grouped: Actuator classes
     private static final int AC_POWER_PER_DEGREE = 80; // Typical window AC unit ~1000W at max
     private static final int HEATER_POWER_PER_DEGREE = 150; // Typical space heater ~1500W at max
-    static class AirConditioner {
+    interface Actuator {
+        double calculatePower(double currentValue);
+
+        // Variant for callers that hold the cycle's setpoint; only the air conditioners use it
+        default double calculatePower(double currentValue, double desiredTemp) {
+            return calculatePower(currentValue);
+        }
+
+        // Whether currentValue is the room's humidity rather than its temperature
+        default boolean readsHumidity() {
+            return false;
+        }
+    }
+    static class AirConditioner implements Actuator {
         public double getDesiredTemp() {
-            return ThermostatDisplay.getDesiredTempControl();
+            return ControlPlane.SHARED.current().desiredTemp;
         }
         public double calculatePower(double currentTemp) {
-            double tempDiff = Math.abs(currentTemp - getDesiredTemp());
+            return calculatePower(currentTemp, getDesiredTemp());
+        }
+        // Variant for callers that already hold the setpoint for this cycle
+        public double calculatePower(double currentTemp, double desiredTemp) {
+            double tempDiff = Math.abs(currentTemp - desiredTemp);
             double power = (tempDiff / 1.0) * AC_POWER_PER_DEGREE;
             return Math.min(1000.0, Math.round(power * 10.0) / 10.0); // Cap at 1000W
         }
     }
-    static class Heater {
+    static class Heater implements Actuator {
         private final double desiredTemp = 21.0;
         public double calculatePower(double currentTemp) {
             if (currentTemp >= desiredTemp) return 0.0;
@@ -71,26 +168,30 @@ public class Javaprojectsecond {
     }
     static class SecondaryAirConditioner extends AirConditioner {
         @Override
-        public double calculatePower(double currentTemp) {
-            double tempDiff = Math.abs(currentTemp - getDesiredTemp());
+        public double calculatePower(double currentTemp, double desiredTemp) {
+            double tempDiff = Math.abs(currentTemp - desiredTemp);
             double power = (tempDiff / 1.0) * 60; // Smaller unit ~750W max
             return Math.min(750.0, Math.round(power * 10.0) / 10.0);
         }
         
         @Override
         public double getDesiredTemp() {
-            return ThermostatDisplay.getDesiredTempControl();
+            return ControlPlane.SHARED.current().desiredTemp;
         }
     }
-    static class Humidifier {
+    static class Humidifier implements Actuator {
         private final double desiredHumidity = 50.0;
         public double calculatePower(double currentHumidity) {
             double diff = Math.abs(currentHumidity - desiredHumidity);
             double power = (diff / 1.0) * 25; // Typical humidifier ~300W max
             return Math.min(300.0, Math.round(power * 10.0) / 10.0);
         }
+        @Override
+        public boolean readsHumidity() {
+            return true;
+        }
     }
-    static class SmartFan {
+    static class SmartFan implements Actuator {
         public double calculatePower(double temp) {
             return (temp > 26.0) ? 60.0 : 0.0; // Typical ceiling fan ~60W
         }
@@ -98,222 +199,3876 @@ public class Javaprojectsecond {
 
     // Grouped: Utility classes
     static class ElectricityBill {
+        static final double DEFAULT_COST_PER_UNIT = 8.0;
         private double totalWattSeconds = 0.0;
-        private final double costPerUnit = 8.0;
+        private final double costPerUnit = DEFAULT_COST_PER_UNIT;
         public void addConsumption(double watts, int seconds) {
             totalWattSeconds += watts * seconds;
         }
+        // Fractional periods, e.g. a correction for part of a cycle; watts may be negative for a refund
+        public void addConsumption(double watts, double seconds) {
+            totalWattSeconds += watts * seconds;
+        }
         public double getTotalCost() {
             double kWh = totalWattSeconds / 3600000.0;
             return Math.round(kWh * costPerUnit * 100.0) / 100.0;
         }
+        public double getTotalKWh() {
+            return totalWattSeconds / 3600000.0;
+        }
         public void displayBill() {
             System.out.println("Total Electricity Cost: $" + getTotalCost());
         }
     }
 
-    // ThermostatDisplay: extract logic into helpers
-    static class ThermostatDisplay {
+    /**
+     * Energy per room and per appliance for a whole building, safe for any number of writer threads.
+     * Every sum is Neumaier-compensated, so years of 3 s cycles lose nothing to a large running total.
+     * Each room cell and each building stripe is a sequence lock: a writer makes its version odd with a CAS,
+     * updates, and makes it even again, while readers retry if the version was odd or moved and never block a
+     * writer. Building totals are kept in a few stripes, as in LongAdder, so reading them never scans the rooms.
+     */
+    static class BuildingBill implements TickListener {
+        enum Appliance { AIR_CONDITIONER, SECONDARY_AIR_CONDITIONER, HEATER, HUMIDIFIER, FAN }
 
-        public static boolean isWindowOpenControl() {
-            return ThermostatDashboard.windowOpenControl;
+        private static final Appliance[] APPLIANCES = Appliance.values();
+        private static final int CELL = 2 * APPLIANCES.length; // Sum and compensation per appliance
+        private static final VarHandle VERSIONS = MethodHandles.arrayElementVarHandle(long[].class);
+        private static final int SPINS_BEFORE_YIELD = 100;
+
+        /** Building totals written by the threads that hash to it; padded so stripes do not share cache lines. */
+        private static final class Stripe {
+            private static final int PAD = 8;
+            final long[] version = new long[1 + 2 * PAD];
+            final double[] values = new double[CELL + 2 * PAD];
         }
-        
-        public static double getDesiredTempControl() {
-            return ThermostatDashboard.desiredTempControl;
+
+        private final int tickSeconds;
+        private final long[] roomVersions;
+        private final double[] roomValues;
+        private final Stripe[] stripes;
+        private final LongAdder readRetries = new LongAdder();
+
+        public BuildingBill(int roomCount, int tickSeconds) {
+            if (roomCount <= 0 || tickSeconds <= 0) {
+                throw new IllegalArgumentException("roomCount and tickSeconds must be positive");
+            }
+            this.tickSeconds = tickSeconds;
+            roomVersions = new long[roomCount];
+            roomValues = new double[roomCount * CELL];
+            int count = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() * 2 - 1)) * 2;
+            stripes = new Stripe[count];
+            for (int i = 0; i < count; i++) {
+                stripes[i] = new Stripe();
+            }
         }
-        
-        public static int getSimulationSpeedMs() {
-            return ThermostatDashboard.simulationSpeedMs;
+
+        // Bills a room's cycle; set as the TickListener of each HeadlessSimulationEngine in the building
+        @Override
+        public void onTick(int roomId, long simulatedSeconds, ThermostatDisplay.SimulationResult result) {
+            record(roomId, result, tickSeconds);
         }
-        private TemperatureSensor sensor;
-        private AirConditioner ac;
-        private AirConditioner secondaryAC;
-        private final HumidityCalculator humidityCalculator;
-        private final Humidifier humidifier;
-        private SmartFan smartFan;
-        private Heater heater;
-        private ElectricityBill bill;
-        private boolean windowOpen;
-        private int totalRuntimeSeconds = 0;
 
-        public void incrementRuntimeSeconds(int seconds) {
-            this.totalRuntimeSeconds += seconds;
+        public void record(int room, ThermostatDisplay.SimulationResult r, int seconds) {
+            double ac = r.acPower * seconds;
+            double secondary = r.secondaryACPower * seconds;
+            double heater = r.heaterPower * seconds;
+            double humidifier = r.humidifierPower * seconds;
+            double fan = r.fanPower * seconds;
+
+            lock(roomVersions, room);
+            addAll(roomValues, room * CELL, ac, secondary, heater, humidifier, fan);
+            VERSIONS.setRelease(roomVersions, room, (long) VERSIONS.get(roomVersions, room) + 1);
+
+            // Another writer in the stripe moves us on to the next one instead of waiting, as LongAdder does
+            int index = (int) SimulationSeeds.mix64(Thread.currentThread().getId()) & (stripes.length - 1);
+            Stripe stripe;
+            for (int spins = 0; ; spins++) {
+                stripe = stripes[index];
+                long v = (long) VERSIONS.getAcquire(stripe.version, Stripe.PAD);
+                if ((v & 1) == 0 && VERSIONS.compareAndSet(stripe.version, Stripe.PAD, v, v + 1)) break;
+                index = (index + 1) & (stripes.length - 1);
+                backOff(spins);
+            }
+            addAll(stripe.values, Stripe.PAD, ac, secondary, heater, humidifier, fan);
+            VERSIONS.setRelease(stripe.version, Stripe.PAD, (long) VERSIONS.get(stripe.version, Stripe.PAD) + 1);
         }
 
-        public void setTotalRuntimeSeconds(int seconds) {
-            this.totalRuntimeSeconds = seconds;
+        // A room is normally written by one thread at a time, so this almost never spins
+        private static void lock(long[] versions, int i) {
+            for (int spins = 0; ; spins++) {
+                long v = (long) VERSIONS.getAcquire(versions, i);
+                if ((v & 1) == 0 && VERSIONS.compareAndSet(versions, i, v, v + 1)) return;
+                backOff(spins);
+            }
         }
 
-        public void addToTotalRuntimeSeconds(int seconds) {
-            this.totalRuntimeSeconds += seconds;
+        // A version held odd for long means its writer lost the CPU mid-update; let it run instead of spinning
+        private static void backOff(int spins) {
+            if (spins < SPINS_BEFORE_YIELD) {
+                Thread.onSpinWait();
+            } else {
+                Thread.yield();
+            }
         }
 
-        public void updateTotalRuntimeSeconds(int seconds) {
-            this.totalRuntimeSeconds = seconds;
+        private static void addAll(double[] values, int base, double ac, double secondary, double heater,
+                                   double humidifier, double fan) {
+            add(values, base, ac);
+            add(values, base + 2, secondary);
+            add(values, base + 4, heater);
+            add(values, base + 6, humidifier);
+            add(values, base + 8, fan);
         }
 
-        protected void incrementTotalRuntimeSeconds(int seconds) {
-            this.totalRuntimeSeconds += seconds;
+        // Neumaier summation: the low-order bits lost by sum + x are kept in the compensation slot
+        private static void add(double[] values, int i, double x) {
+            double sum = values[i];
+            double t = sum + x;
+            if (Math.abs(sum) >= Math.abs(x)) {
+                values[i + 1] += (sum - t) + x;
+            } else {
+                values[i + 1] += (x - t) + sum;
+            }
+            values[i] = t;
         }
-        public ThermostatDisplay(TemperatureSensor sensor, AirConditioner ac, AirConditioner secondaryAC,
-                                 HumidityCalculator humidityCalculator, Humidifier humidifier, SmartFan smartFan,
-                                 Heater heater, ElectricityBill bill, boolean windowOpen) {
-            this.sensor = sensor;
-            this.ac = ac;
-            this.secondaryAC = secondaryAC;
-            this.humidityCalculator = humidityCalculator;
-            this.humidifier = humidifier;
-            this.smartFan = smartFan;
-            this.heater = heater;
-            this.bill = bill;
-            this.windowOpen = windowOpen;
+
+        // Consistent copy of one cell into `into` (watt-seconds per appliance, by ordinal); retries, never blocks
+        private void read(long[] versions, int vi, double[] values, int base, double[] into) {
+            for (int spins = 0; ; spins++) {
+                long v = (long) VERSIONS.getAcquire(versions, vi);
+                if ((v & 1) == 0) {
+                    for (int a = 0; a < APPLIANCES.length; a++) {
+                        into[a] = values[base + 2 * a] + values[base + 2 * a + 1];
+                    }
+                    VarHandle.acquireFence();
+                    if ((long) VERSIONS.getAcquire(versions, vi) == v) return;
+                }
+                readRetries.increment();
+                backOff(spins);
+            }
         }
 
-        // Helper: calculate all simulation values for this cycle
-        public SimulationResult calculateSimulation() {
-            Random rand = new Random();
-            int people = rand.nextInt(21);
-            double temp = sensor.getTemperature() + (people * 1);
-            if (windowOpen) temp -= 1.5;
-            if (temp > 45.0) temp = rand.nextInt(40);
-            double baseHumidity = humidityCalculator.getHumidity();
-            double humidity = baseHumidity + (people * 0.1);
-            
-            // Determine if heating or cooling is needed based on desired temperature
-            double desiredTemp = ThermostatDisplay.getDesiredTempControl();
-            double tempDiff = temp - desiredTemp;
-            
-            double acPower = 0.0;
-            double secondaryACPower = 0.0;
-            double heaterPower = 0.0;
-            
-            if (tempDiff > 0) {  // Room is too warm, use AC
-                acPower = (people == 0) ? 0.0 : ac.calculatePower(temp);
-                secondaryACPower = (people > 10) ? secondaryAC.calculatePower(temp) : 0.0;
-                heaterPower = 0.0;  // Ensure heater is off
-            } else {  // Room is too cool, use heater
-                acPower = 0.0;  // Ensure AC is off
-                secondaryACPower = 0.0;  // Ensure secondary AC is off
-                heaterPower = heater.calculatePower(temp);
+        public double[] readRoom(int room, double[] into) {
+            read(roomVersions, room, roomValues, room * CELL, into);
+            return into;
+        }
+
+        // Building watt-seconds per appliance, summed over the stripes; each stripe is read consistently
+        public double[] readBuilding(double[] into) {
+            double[] stripe = new double[APPLIANCES.length];
+            Arrays.fill(into, 0, APPLIANCES.length, 0.0);
+            for (Stripe s : stripes) {
+                read(s.version, Stripe.PAD, s.values, Stripe.PAD, stripe);
+                for (int a = 0; a < APPLIANCES.length; a++) {
+                    into[a] += stripe[a];
+                }
+            }
+            return into;
+        }
+
+        public double getRoomKWh(int room, Appliance appliance) {
+            return readRoom(room, new double[APPLIANCES.length])[appliance.ordinal()] / 3600000.0;
+        }
+
+        public double getBuildingKWh(Appliance appliance) {
+            return readBuilding(new double[APPLIANCES.length])[appliance.ordinal()] / 3600000.0;
+        }
+
+        public double getBuildingKWh() {
+            double total = 0.0;
+            for (double wattSeconds : readBuilding(new double[APPLIANCES.length])) total += wattSeconds;
+            return total / 3600000.0;
+        }
+
+        public double getBuildingCost() {
+            return Math.round(getBuildingKWh() * ElectricityBill.DEFAULT_COST_PER_UNIT * 100.0) / 100.0;
+        }
+
+        public int getRoomCount() { return roomVersions.length; }
+        public long getReadRetries() { return readRetries.sum(); }
+
+        // Usage: BuildingBill [rooms] [threads] [cycles] [seed]
+        // Bills a fleet through one shared BuildingBill while a reader polls the building total
+        public static void main(String[] args) throws InterruptedException {
+            int roomCount = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+            int threads = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+            long cycles = args.length > 2 ? Long.parseLong(args[2]) : 10_000;
+            long seed = args.length > 3 ? Long.parseLong(args[3]) : SimulationSeeds.randomMasterSeed();
+
+            FleetRunner fleet = new FleetRunner(roomCount, "July", false, threads, seed);
+            BuildingBill bill = new BuildingBill(roomCount, HeadlessSimulationEngine.DEFAULT_TICK_SECONDS);
+            for (int i = 0; i < roomCount; i++) {
+                fleet.getRoom(i).setTickListener(bill);
+            }
+            AtomicLong reads = new AtomicLong();
+            Thread reader = new Thread(() -> {
+                double[] into = new double[APPLIANCES.length];
+                while (!Thread.currentThread().isInterrupted()) {
+                    bill.readBuilding(into);
+                    reads.incrementAndGet();
+                    Thread.yield();
+                }
+            }, "bill-reader");
+            reader.setDaemon(true);
+            reader.start();
+            fleet.runCycles(cycles);
+            reader.interrupt();
+            reader.join();
+
+            fleet.printReport();
+            double[] building = bill.readBuilding(new double[APPLIANCES.length]);
+            for (Appliance a : APPLIANCES) {
+                double kWh = building[a.ordinal()] / 3600000.0;
+                System.out.println(String.format("  %-26s %14.3f kWh  $%12.2f", a, kWh,
+                        kWh * ElectricityBill.DEFAULT_COST_PER_UNIT));
+            }
+            double perRoomKWh = 0.0;
+            for (int i = 0; i < roomCount; i++) {
+                perRoomKWh += fleet.getRoom(i).getBill().getTotalKWh();
+            }
+            System.out.println(String.format("Building: %.3f kWh, $%.2f; sum of room ElectricityBills: %.3f kWh (%+.6f Wh)",
+                    bill.getBuildingKWh(), bill.getBuildingCost(), perRoomKWh, (perRoomKWh - bill.getBuildingKWh()) * 1000));
+            System.out.println("Concurrent building reads: " + reads.get() + ", read retries: " + bill.getReadRetries()
+                    + ", stripes: " + bill.stripes.length);
+            fleet.shutdown();
+        }
+    }
+
+    /**
+     * Prices hourly interval history under flat, time-of-use, tiered and demand-charge tariffs.
+     * Each room's intervals are kept as prefix sums per hour of day, in whole 0.1 Wh. The model's powers are multiples
+     * of 0.1 W, so an hour simulated as one 3600 s tick is stored exactly; an hour summed from shorter ticks, such as
+     * the usual 3 s, is rounded to the nearest 0.1 Wh. The energy of any window, split by hour of day, is then 24
+     * subtractions whatever its length, and the peak interval of a window comes from a sparse table over daily
+     * peaks plus at most two partial days. Re-pricing a year is a few queries per room and billing period.
+     */
+    static class TariffEngine {
+        static final int HOURS_PER_DAY = 24;
+        static final int[] DAYS_PER_MONTH = {31, 28, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31};
+        private static final double DECI_WH_PER_KWH = 10_000.0;
+
+        /** Cost of hours [fromHour, toHour) of one room, priced as a single billing period. */
+        interface Tariff {
+            double cost(TariffEngine history, int room, int fromHour, int toHour);
+        }
+
+        static class FlatTariff implements Tariff {
+            private final double ratePerKWh;
+
+            FlatTariff(double ratePerKWh) {
+                this.ratePerKWh = ratePerKWh;
+            }
+
+            @Override
+            public double cost(TariffEngine history, int room, int fromHour, int toHour) {
+                return history.energyKWh(room, fromHour, toHour) * ratePerKWh;
+            }
+        }
+
+        static class TimeOfUseTariff implements Tariff {
+            private final double[] ratePerKWhByHour;
+            private final long[] scratch = new long[HOURS_PER_DAY];
+
+            TimeOfUseTariff(double[] ratePerKWhByHour) {
+                if (ratePerKWhByHour.length != HOURS_PER_DAY) {
+                    throw new IllegalArgumentException("Need one rate per hour of day, got " + ratePerKWhByHour.length);
+                }
+                this.ratePerKWhByHour = ratePerKWhByHour.clone();
+            }
+
+            // Peak rate for hours [peakStart, peakEnd) of each day, off-peak otherwise
+            static TimeOfUseTariff peakOffPeak(double offPeak, double peak, int peakStart, int peakEnd) {
+                double[] rates = new double[HOURS_PER_DAY];
+                for (int h = 0; h < HOURS_PER_DAY; h++) {
+                    rates[h] = h >= peakStart && h < peakEnd ? peak : offPeak;
+                }
+                return new TimeOfUseTariff(rates);
+            }
+
+            // Not thread-safe: reuses one buffer for the hourly split
+            @Override
+            public double cost(TariffEngine history, int room, int fromHour, int toHour) {
+                history.energyByHourOfDay(room, fromHour, toHour, scratch);
+                double cost = 0.0;
+                for (int h = 0; h < HOURS_PER_DAY; h++) {
+                    cost += scratch[h] / DECI_WH_PER_KWH * ratePerKWhByHour[h];
+                }
+                return cost;
+            }
+        }
+
+        // Block rates on the period's consumption: the first limits[0] kWh at rates[0], the next up to limits[1]
+        // at rates[1], and so on, with the last rate applying above the last limit
+        static class TieredTariff implements Tariff {
+            private final double[] limitsKWh;
+            private final double[] rates;
+
+            TieredTariff(double[] limitsKWh, double[] rates) {
+                if (rates.length != limitsKWh.length + 1) {
+                    throw new IllegalArgumentException("Need one more rate than limits");
+                }
+                for (int t = 0; t < limitsKWh.length; t++) {
+                    if (!(limitsKWh[t] > (t == 0 ? 0.0 : limitsKWh[t - 1]))) {
+                        throw new IllegalArgumentException("Limits must be positive and strictly increasing: "
+                                + Arrays.toString(limitsKWh));
+                    }
+                }
+                this.limitsKWh = limitsKWh.clone();
+                this.rates = rates.clone();
+            }
+
+            @Override
+            public double cost(TariffEngine history, int room, int fromHour, int toHour) {
+                double kWh = history.energyKWh(room, fromHour, toHour);
+                double cost = 0.0;
+                double below = 0.0;
+                for (int t = 0; t < limitsKWh.length && kWh > below; t++) {
+                    cost += (Math.min(kWh, limitsKWh[t]) - below) * rates[t];
+                    below = limitsKWh[t];
+                }
+                return kWh > below ? cost + (kWh - below) * rates[rates.length - 1] : cost;
+            }
+        }
+
+        // An energy tariff plus a charge on the period's highest hourly demand
+        static class DemandChargeTariff implements Tariff {
+            private final Tariff energy;
+            private final double ratePerKW;
+
+            DemandChargeTariff(Tariff energy, double ratePerKW) {
+                this.energy = energy;
+                this.ratePerKW = ratePerKW;
+            }
+
+            @Override
+            public double cost(TariffEngine history, int room, int fromHour, int toHour) {
+                return energy.cost(history, room, fromHour, toHour) + history.peakKW(room, fromHour, toHour) * ratePerKW;
+            }
+        }
+
+        private final int days;
+        private final int stride;
+        private final int levels;
+        private final int maxIntervalDeciWh;
+        // Per room: deci-Wh prefix per hour of day at [hour * stride + day], i.e. that hour's total over earlier days
+        private final int[][] prefix;
+        // Per room: sparse table over daily peaks, level k at [k * days + day] = peak of days [day, day + 2^k)
+        private final int[][] dailyPeaks;
+        private boolean built = false;
+
+        public TariffEngine(int roomCount, int days) {
+            if (roomCount <= 0 || days <= 0) {
+                throw new IllegalArgumentException("roomCount and days must be positive");
+            }
+            this.days = days;
+            this.stride = days + 1;
+            this.levels = 32 - Integer.numberOfLeadingZeros(days);
+            this.maxIntervalDeciWh = Integer.MAX_VALUE / days;
+            prefix = new int[roomCount][HOURS_PER_DAY * stride];
+            dailyPeaks = new int[roomCount][];
+        }
+
+        // Energy of one interval; every interval is recorded before build(). The upper limit keeps each hour of day's
+        // total over all days within an int (about 588 kW on average for a year of history).
+        public void record(int room, int hour, double wattHours) {
+            if (built) {
+                throw new IllegalStateException("History is already built");
+            }
+            if (hour < 0 || hour >= getHours()) {
+                throw new IllegalArgumentException("Hour " + hour + " outside 0.." + (getHours() - 1));
+            }
+            long deciWh = Math.round(wattHours * 10.0);
+            if (!(wattHours >= 0) || deciWh > maxIntervalDeciWh) {
+                throw new IllegalArgumentException("Interval energy " + wattHours + " Wh outside 0.."
+                        + maxIntervalDeciWh / 10.0 + " Wh for " + days + " days of history");
+            }
+            prefix[room][(hour % HOURS_PER_DAY) * stride + hour / HOURS_PER_DAY + 1] = (int) deciWh;
+        }
+
+        // Turns the recorded intervals into prefix sums and daily peak tables; queries are valid afterwards
+        public void build() {
+            if (built) return;
+            for (int room = 0; room < prefix.length; room++) {
+                int[] p = prefix[room];
+                int[] table = new int[levels * days];
+                for (int h = 0; h < HOURS_PER_DAY; h++) {
+                    int base = h * stride;
+                    for (int d = 0; d < days; d++) {
+                        int interval = p[base + d + 1];
+                        if (interval > table[d]) table[d] = interval;
+                        p[base + d + 1] = p[base + d] + interval;
+                    }
+                }
+                for (int k = 1; k < levels; k++) {
+                    int half = 1 << (k - 1);
+                    for (int d = 0; d + (1 << k) <= days; d++) {
+                        table[k * days + d] = Math.max(table[(k - 1) * days + d], table[(k - 1) * days + d + half]);
+                    }
+                }
+                dailyPeaks[room] = table;
+            }
+            built = true;
+        }
+
+        private int[] prefixOf(int room, int fromHour, int toHour) {
+            if (!built) {
+                throw new IllegalStateException("Call build() before querying");
+            }
+            if (fromHour < 0 || toHour > getHours() || fromHour > toHour) {
+                throw new IllegalArgumentException("Window [" + fromHour + ", " + toHour + ") outside 0.." + getHours());
+            }
+            return prefix[room];
+        }
+
+        // Energy per hour of day in [fromHour, toHour), in 0.1 Wh: hour h of day d lies inside exactly when
+        // ceil((from - h) / 24) <= d < ceil((to - h) / 24)
+        public long[] energyByHourOfDay(int room, int fromHour, int toHour, long[] into) {
+            int[] p = prefixOf(room, fromHour, toHour);
+            for (int h = 0; h < HOURS_PER_DAY; h++) {
+                int base = h * stride;
+                into[h] = p[base + (toHour - h + HOURS_PER_DAY - 1) / HOURS_PER_DAY]
+                        - p[base + (fromHour - h + HOURS_PER_DAY - 1) / HOURS_PER_DAY];
+            }
+            return into;
+        }
+
+        public double energyKWh(int room, int fromHour, int toHour) {
+            int[] p = prefixOf(room, fromHour, toHour);
+            long total = 0;
+            for (int h = 0; h < HOURS_PER_DAY; h++) {
+                int base = h * stride;
+                total += p[base + (toHour - h + HOURS_PER_DAY - 1) / HOURS_PER_DAY]
+                        - p[base + (fromHour - h + HOURS_PER_DAY - 1) / HOURS_PER_DAY];
+            }
+            return total / DECI_WH_PER_KWH;
+        }
+
+        // Highest hourly energy in the window, as average kW over that hour
+        public double peakKW(int room, int fromHour, int toHour) {
+            int[] p = prefixOf(room, fromHour, toHour);
+            int firstFullDay = (fromHour + HOURS_PER_DAY - 1) / HOURS_PER_DAY;
+            int endFullDay = toHour / HOURS_PER_DAY;
+            int peak = 0;
+            if (firstFullDay >= endFullDay) {
+                for (int hour = fromHour; hour < toHour; hour++) peak = Math.max(peak, interval(p, hour));
+            } else {
+                for (int hour = fromHour; hour < firstFullDay * HOURS_PER_DAY; hour++) peak = Math.max(peak, interval(p, hour));
+                for (int hour = endFullDay * HOURS_PER_DAY; hour < toHour; hour++) peak = Math.max(peak, interval(p, hour));
+                int[] table = dailyPeaks[room];
+                int k = 31 - Integer.numberOfLeadingZeros(endFullDay - firstFullDay);
+                peak = Math.max(peak, Math.max(table[k * days + firstFullDay], table[k * days + endFullDay - (1 << k)]));
+            }
+            return peak / DECI_WH_PER_KWH;
+        }
+
+        private int interval(int[] p, int hour) {
+            int i = (hour % HOURS_PER_DAY) * stride + hour / HOURS_PER_DAY;
+            return p[i + 1] - p[i];
+        }
+
+        public double getIntervalKWh(int room, int hour) {
+            return interval(prefixOf(room, hour, hour + 1), hour) / DECI_WH_PER_KWH;
+        }
+
+        // Sum over rooms of their monthly bills (calendar months from hour 0; a trailing partial month is its own period)
+        public double priceMonthly(Tariff tariff) {
+            double total = 0.0;
+            for (int room = 0; room < prefix.length; room++) {
+                int from = 0;
+                for (int m = 0; from < getHours(); m = (m + 1) % DAYS_PER_MONTH.length) {
+                    int to = Math.min(getHours(), from + DAYS_PER_MONTH[m] * HOURS_PER_DAY);
+                    total += tariff.cost(this, room, from, to);
+                    from = to;
+                }
+            }
+            return total;
+        }
+
+        public int getRoomCount() { return prefix.length; }
+        public int getDays() { return days; }
+        public int getHours() { return days * HOURS_PER_DAY; }
+
+        public long getBytesPerRoom() {
+            return (long) Integer.BYTES * (HOURS_PER_DAY * stride + levels * days);
+        }
+
+        // Usage: TariffEngine [rooms] [days] [seed]
+        // Simulates hourly history with BatchFleetEngine (month climate follows the calendar), checks random windows
+        // against a plain scan and times re-pricing the whole history under each tariff
+        public static void main(String[] args) {
+            int roomCount = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+            int days = args.length > 1 ? Integer.parseInt(args[1]) : 365;
+            long seed = args.length > 2 ? Long.parseLong(args[2]) : SimulationSeeds.randomMasterSeed();
+
+            long start = System.nanoTime();
+            BatchFleetEngine fleet = new BatchFleetEngine(roomCount, new ControlPlane(ControlPlane.SHARED.current()
+                    .withMonth(MonteCarloSweep.ALL_MONTHS[0])), 3600, seed);
+            TariffEngine history = new TariffEngine(roomCount, days);
+            double[] before = new double[roomCount];
+            int month = 0;
+            int monthEnd = DAYS_PER_MONTH[0];
+            for (int day = 0; day < days; day++) {
+                if (day == monthEnd) {
+                    month = (month + 1) % DAYS_PER_MONTH.length;
+                    monthEnd += DAYS_PER_MONTH[month];
+                    fleet.getControls().setMonth(MonteCarloSweep.ALL_MONTHS[month]);
+                }
+                for (int h = 0; h < HOURS_PER_DAY; h++) {
+                    fleet.step();
+                    int hour = day * HOURS_PER_DAY + h;
+                    for (int room = 0; room < roomCount; room++) {
+                        double wattSeconds = fleet.getRoomWattSeconds(room);
+                        history.record(room, hour, (wattSeconds - before[room]) / 3600.0);
+                        before[room] = wattSeconds;
+                    }
+                }
+            }
+            double simulated = (System.nanoTime() - start) / 1e9;
+            start = System.nanoTime();
+            history.build();
+            System.out.println(String.format("%d rooms x %d hourly intervals: simulated in %.2f s, built in %.3f s, %d bytes per room",
+                    roomCount, history.getHours(), simulated, (System.nanoTime() - start) / 1e9, history.getBytesPerRoom()));
+
+            SplittableRandom random = new SplittableRandom(seed);
+            int mismatches = 0;
+            int windows = 1000;
+            for (int i = 0; i < windows; i++) {
+                int room = random.nextInt(roomCount);
+                int a = random.nextInt(history.getHours() + 1);
+                int b = random.nextInt(history.getHours() + 1);
+                int from = Math.min(a, b);
+                int to = Math.max(a, b);
+                double kWh = 0.0;
+                double peak = 0.0;
+                for (int hour = from; hour < to; hour++) {
+                    kWh += history.getIntervalKWh(room, hour);
+                    peak = Math.max(peak, history.getIntervalKWh(room, hour));
+                }
+                if (Math.abs(kWh - history.energyKWh(room, from, to)) > 1e-6 || peak != history.peakKW(room, from, to)) {
+                    mismatches++;
+                }
+            }
+            double fleetKWh = 0.0;
+            for (int room = 0; room < roomCount; room++) {
+                fleetKWh += fleet.getRoomKWh(room);
+            }
+            System.out.println(String.format("Random windows checked against a scan: %d, mismatches: %d; history %.1f kWh,"
+                    + " simulation %.1f kWh", windows, mismatches, history.priceMonthly(new FlatTariff(1.0)), fleetKWh));
+
+            Map<String, Tariff> tariffs = new LinkedHashMap<>();
+            tariffs.put("flat 8.0/kWh", new FlatTariff(ElectricityBill.DEFAULT_COST_PER_UNIT));
+            tariffs.put("time-of-use 6.0, peak 16-22h 12.0", TimeOfUseTariff.peakOffPeak(6.0, 12.0, 16, 22));
+            tariffs.put("tiered 6.0 / 8.0 above 100 / 11.0 above 300 kWh",
+                    new TieredTariff(new double[]{100, 300}, new double[]{6.0, 8.0, 11.0}));
+            tariffs.put("time-of-use + demand 150/kW", new DemandChargeTariff(TimeOfUseTariff.peakOffPeak(6.0, 12.0, 16, 22), 150.0));
+            for (int warm = 0; warm < 3; warm++) {
+                for (Tariff tariff : tariffs.values()) history.priceMonthly(tariff);
+            }
+            for (Map.Entry<String, Tariff> entry : tariffs.entrySet()) {
+                start = System.nanoTime();
+                double cost = history.priceMonthly(entry.getValue());
+                System.out.println(String.format("  %-50s $%16.2f  re-priced in %6.1f ms", entry.getKey(), cost,
+                        (System.nanoTime() - start) / 1e6));
+            }
+        }
+    }
+
+    /**
+     * Appends log entries from a bounded queue on one background thread.
+     * The file stays open between entries, is flushed when enough text is pending or the flush
+     * interval elapses, and is rotated by size (name.1, name.2, ...) keeping a fixed number of old files.
+     * Callers never touch the disk: when the queue is full the entry is dropped and counted.
+     */
+    static class AsyncLogWriter implements AutoCloseable {
+        private final File file;
+        private final long maxFileBytes;
+        private final int retainedFiles;
+        private final int flushChars;
+        private final long flushIntervalMs;
+        private final BlockingQueue<String> queue;
+        private final AtomicLong dropped = new AtomicLong();
+        private final Thread writerThread;
+        private volatile boolean running = true;
+        private volatile IOException failure;
+        private BufferedWriter writer;
+        private long fileBytes;
+
+        public AsyncLogWriter(File file, int queueCapacity, long maxFileBytes, int retainedFiles,
+                              int flushChars, long flushIntervalMs) {
+            this.file = file;
+            this.maxFileBytes = maxFileBytes;
+            this.retainedFiles = retainedFiles;
+            this.flushChars = flushChars;
+            this.flushIntervalMs = flushIntervalMs;
+            this.queue = new ArrayBlockingQueue<>(queueCapacity);
+            this.writerThread = new Thread(this::drainLoop, "log-writer-" + file.getName());
+            this.writerThread.setDaemon(true);
+            this.writerThread.start();
+        }
+
+        // Shared writer for thermostat_log.txt: 4096 queued entries, 10 MB files, 5 rotations
+        private static final class Shared {
+            static final AsyncLogWriter INSTANCE = create();
+
+            private static AsyncLogWriter create() {
+                AsyncLogWriter log = new AsyncLogWriter(new File("thermostat_log.txt"), 4096,
+                        10L * 1024 * 1024, 5, 64 * 1024, 1000);
+                Runtime.getRuntime().addShutdownHook(new Thread(log::close, "log-writer-shutdown"));
+                return log;
+            }
+        }
+
+        public static AsyncLogWriter shared() {
+            return Shared.INSTANCE;
+        }
+
+        // Queue an entry without blocking; returns false if it had to be dropped, including after the writer has failed
+        public boolean submit(String entry) {
+            if (!running || !queue.offer(entry)) {
+                dropped.incrementAndGet();
+                return false;
+            }
+            // close() or a failure may have stopped the writer between the check and the offer. Take the entry back
+            // if it is still queued; if it is gone, the draining writer already took it.
+            if (!running && queue.remove(entry)) {
+                dropped.incrementAndGet();
+                return false;
+            }
+            return true;
+        }
+
+        public long getDroppedCount() {
+            return dropped.get();
+        }
+
+        // The error that stopped the writer, or null while it is healthy
+        public IOException getFailure() {
+            return failure;
+        }
+
+        public int getQueuedCount() {
+            return queue.size();
+        }
+
+        private void drainLoop() {
+            List<String> batch = new ArrayList<>();
+            int pendingChars = 0;
+            long lastFlush = System.currentTimeMillis();
+            try {
+                openWriter();
+                while (running || !queue.isEmpty()) {
+                    String entry = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                    if (entry != null) {
+                        batch.add(entry);
+                        queue.drainTo(batch);
+                        for (String e : batch) {
+                            writer.write(e);
+                            pendingChars += e.length();
+                            fileBytes += utf8Length(e);
+                        }
+                        batch.clear();
+                    }
+                    long now = System.currentTimeMillis();
+                    if (pendingChars > 0 && (pendingChars >= flushChars || now - lastFlush >= flushIntervalMs)) {
+                        writer.flush();
+                        pendingChars = 0;
+                        lastFlush = now;
+                    }
+                    if (fileBytes >= maxFileBytes) {
+                        rotate();
+                        pendingChars = 0;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException e) {
+                // Nothing more can be written: refuse new entries and count the stranded ones as dropped
+                failure = e;
+                running = false;
+                dropped.addAndGet(batch.size());
+                while (queue.poll() != null) {
+                    dropped.incrementAndGet();
+                }
+                e.printStackTrace();
+            } finally {
+                running = false;
+                closeWriter();
+            }
+        }
+
+        // Size of the entry once encoded, so rotation happens at maxFileBytes on disk
+        static int utf8Length(String s) {
+            int n = s.length();
+            int bytes = n;
+            for (int i = 0; i < n; i++) {
+                char c = s.charAt(i);
+                if (c < 0x80) continue;
+                if (c < 0x800) {
+                    bytes += 1;
+                } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+                    bytes += 2; // Four bytes for the pair
+                    i++;
+                } else if (!Character.isSurrogate(c)) {
+                    bytes += 2;
+                } // A lone surrogate is written as a one-byte '?'
+            }
+            return bytes;
+        }
+
+        private void openWriter() throws IOException {
+            writer = new BufferedWriter(new FileWriter(file, StandardCharsets.UTF_8, true), 64 * 1024);
+            fileBytes = file.length();
+        }
+
+        private void closeWriter() {
+            if (writer == null) return;
+            try {
+                writer.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            writer = null;
+        }
+
+        // Shift name.(n-1) -> name.n, ..., name -> name.1 and drop anything beyond the retention
+        private void rotate() throws IOException {
+            closeWriter();
+            String base = file.getPath();
+            Files.deleteIfExists(new File(base + "." + retainedFiles).toPath());
+            for (int i = retainedFiles - 1; i >= 1; i--) {
+                File older = new File(base + "." + i);
+                if (older.exists()) {
+                    Files.move(older.toPath(), new File(base + "." + (i + 1)).toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            if (retainedFiles > 0) {
+                Files.move(file.toPath(), new File(base + ".1").toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } else {
+                Files.deleteIfExists(file.toPath());
+            }
+            openWriter();
+        }
+
+        // Stop accepting entries, write out everything queued and close the file
+        @Override
+        public void close() {
+            running = false;
+            try {
+                writerThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Immutable set of user controls. Every change produces a new instance with a higher version,
+     * so a tick that holds one snapshot sees a consistent setpoint, window state and climate.
+     */
+    static final class ControlSettings {
+        static final ControlSettings DEFAULTS = new ControlSettings(0, 21.0, false, 14.0, 65.0);
+
+        final long version;
+        final double desiredTemp;
+        final boolean windowOpen;
+        final double baseTemp;
+        final double baseHumidity;
+
+        ControlSettings(long version, double desiredTemp, boolean windowOpen, double baseTemp, double baseHumidity) {
+            this.version = version;
+            this.desiredTemp = desiredTemp;
+            this.windowOpen = windowOpen;
+            this.baseTemp = baseTemp;
+            this.baseHumidity = baseHumidity;
+        }
+
+        ControlSettings withDesiredTemp(double desiredTemp) {
+            return new ControlSettings(version + 1, desiredTemp, windowOpen, baseTemp, baseHumidity);
+        }
+
+        ControlSettings withWindowOpen(boolean windowOpen) {
+            return new ControlSettings(version + 1, desiredTemp, windowOpen, baseTemp, baseHumidity);
+        }
+
+        ControlSettings withClimate(double baseTemp, double baseHumidity) {
+            return new ControlSettings(version + 1, desiredTemp, windowOpen, baseTemp, baseHumidity);
+        }
+
+        ControlSettings withMonth(String month) {
+            double[] base = ThermostatDisplay.getBaseTempHumidity(month);
+            return withClimate(base[0], base[1]);
+        }
+
+        @Override
+        public String toString() {
+            return "v" + version + " setpoint=" + desiredTemp + " window=" + (windowOpen ? "open" : "closed")
+                    + " base=" + baseTemp + "/" + baseHumidity;
+        }
+    }
+
+    /**
+     * Publishes ControlSettings snapshots through an AtomicReference.
+     * The tick loop reads one snapshot per cycle without locking; writers (usually the EDT) swap in a new one
+     * with compare-and-set. Rooms either share a plane, such as SHARED for the dashboard, or get their own.
+     * A plane may also follow another one through a fixed override (say, a room whose window is always open): it sees
+     * every change to the base with the override applied, and its writes go to the base.
+     * Kept outside ThermostatDashboard so headless runs never load Swing.
+     */
+    static final class ControlPlane {
+        static final ControlPlane SHARED = new ControlPlane(ControlSettings.DEFAULTS);
+
+        interface ChangeListener {
+            // Called on the writer's thread right after the new snapshot is published
+            void onChange(ControlSettings before, ControlSettings after, long changedAtNanos);
+        }
+
+        // A base snapshot and the snapshot derived from it, swapped as one
+        private static final class Overlay {
+            final ControlSettings from;
+            final ControlSettings to;
+
+            Overlay(ControlSettings from, ControlSettings to) {
+                this.from = from;
+                this.to = to;
+            }
+        }
+
+        private final AtomicReference<ControlSettings> current;
+        private final List<ChangeListener> listeners = new CopyOnWriteArrayList<>();
+        // Set only on a plane that follows another one
+        private final ControlPlane base;
+        private final UnaryOperator<ControlSettings> override;
+        private final AtomicReference<Overlay> overlay;
+        private final ChangeListener forwarder;
+
+        ControlPlane(ControlSettings initial) {
+            this.current = new AtomicReference<>(initial);
+            this.base = null;
+            this.override = null;
+            this.overlay = null;
+            this.forwarder = null;
+        }
+
+        ControlPlane(ControlPlane base, UnaryOperator<ControlSettings> override) {
+            this.current = null;
+            this.base = base;
+            this.override = override;
+            ControlSettings b = base.current();
+            this.overlay = new AtomicReference<>(new Overlay(b, override.apply(b)));
+            this.forwarder = (before, after, changedAtNanos) -> {
+                ControlSettings from = override.apply(before);
+                ControlSettings to = current();
+                for (ChangeListener listener : listeners) {
+                    listener.onChange(from, to, changedAtNanos);
+                }
+            };
+        }
+
+        // On a following plane the override is reapplied only when the base has changed since the last read
+        public ControlSettings current() {
+            if (base == null) return current.get();
+            ControlSettings b = base.current();
+            Overlay o = overlay.get();
+            if (o.from != b) {
+                o = new Overlay(b, override.apply(b));
+                overlay.set(o);
+            }
+            return o.to;
+        }
+
+        // Apply a change to the latest snapshot; retried if another writer got in first.
+        // A following plane applies it to its base, so the override still wins on the fields it sets.
+        public ControlSettings update(UnaryOperator<ControlSettings> change) {
+            if (base != null) {
+                base.update(change);
+                return current();
+            }
+            while (true) {
+                ControlSettings before = current.get();
+                ControlSettings after = change.apply(before);
+                if (current.compareAndSet(before, after)) {
+                    long now = System.nanoTime();
+                    for (ChangeListener listener : listeners) {
+                        listener.onChange(before, after, now);
+                    }
+                    return after;
+                }
+            }
+        }
+
+        public ControlSettings setDesiredTemp(double desiredTemp) {
+            return update(s -> s.withDesiredTemp(desiredTemp));
+        }
+
+        public ControlSettings setWindowOpen(boolean windowOpen) {
+            return update(s -> s.withWindowOpen(windowOpen));
+        }
+
+        public ControlSettings setMonth(String month) {
+            return update(s -> s.withMonth(month));
+        }
+
+        public long getVersion() {
+            return current().version;
+        }
+
+        // A following plane listens to its base only while it has listeners of its own, so it can be dropped freely
+        public synchronized void addListener(ChangeListener listener) {
+            if (base != null && listeners.isEmpty()) base.addListener(forwarder);
+            listeners.add(listener);
+        }
+
+        public synchronized void removeListener(ChangeListener listener) {
+            if (listeners.remove(listener) && base != null && listeners.isEmpty()) base.removeListener(forwarder);
+        }
+    }
+
+    /**
+     * Simulated time that follows the wall clock at an adjustable warp factor (1x to 10,000x).
+     * Warp, pause and single steps may be changed from any thread while a run is in progress; the
+     * simulation thread asks how many whole ticks are due and any remainder carries over to the next call,
+     * so the billed time always equals the simulated time regardless of how often the thread wakes up.
+     */
+    static class SimulationClock {
+        public static final double MIN_WARP = 1.0;
+        public static final double MAX_WARP = 10_000.0;
+
+        private double warp = MIN_WARP;
+        private boolean paused = false;
+        private long lastNanos = System.nanoTime();
+        private double dueSeconds = 0.0;
+        private double simulatedSeconds = 0.0;
+
+        // Helper: credit the wall time since the last call at the current rate
+        private void accrue(long nowNanos) {
+            if (!paused) {
+                dueSeconds += (nowNanos - lastNanos) / 1e9 * warp;
+            }
+            lastNanos = nowNanos;
+        }
+
+        public synchronized void setWarp(double warp) {
+            if (!(warp >= MIN_WARP && warp <= MAX_WARP)) {
+                throw new IllegalArgumentException("warp must be between " + MIN_WARP + " and " + MAX_WARP + ": " + warp);
+            }
+            accrue(System.nanoTime()); // Time so far passed at the old rate
+            this.warp = warp;
+        }
+
+        public synchronized double getWarp() {
+            return warp;
+        }
+
+        public synchronized void pause() {
+            accrue(System.nanoTime());
+            paused = true;
+        }
+
+        public synchronized void resume() {
+            accrue(System.nanoTime());
+            paused = false;
+        }
+
+        public synchronized boolean isPaused() {
+            return paused;
+        }
+
+        // Make the given simulated time due immediately, paused or not
+        public synchronized void step(double seconds) {
+            if (!(seconds > 0)) {
+                throw new IllegalArgumentException("seconds must be positive: " + seconds);
+            }
+            dueSeconds += seconds;
+        }
+
+        // Number of whole ticks of the given length that are due now; those ticks count as simulated
+        public synchronized int advance(double tickSeconds) {
+            accrue(System.nanoTime());
+            int ticks = (int) Math.min(Integer.MAX_VALUE, Math.floor(dueSeconds / tickSeconds));
+            dueSeconds -= ticks * tickSeconds;
+            simulatedSeconds += ticks * tickSeconds;
+            return ticks;
+        }
+
+        // Simulated time that has passed since the last whole tick was handed out
+        public synchronized double pendingSeconds() {
+            accrue(System.nanoTime());
+            return dueSeconds;
+        }
+
+        public synchronized double getSimulatedSeconds() {
+            return simulatedSeconds;
+        }
+
+        // Start a new run at simulated time zero; warp and pause state are kept
+        public synchronized void reset() {
+            lastNanos = System.nanoTime();
+            dueSeconds = 0.0;
+            simulatedSeconds = 0.0;
+        }
+    }
+
+    /**
+     * Fixed-rate scheduler that keeps absolute deadlines, so a late run never pushes later runs back.
+     * Each run is told how many periods it stands for: CATCH_UP replays missed periods one by one,
+     * SKIP folds them into a single run and counts them. Lateness of every run is recorded as jitter.
+     * stop() pauses the schedule and start() resumes it; close() also releases an executor the scheduler created.
+     */
+    static class TickScheduler {
+        enum MissedTickPolicy { CATCH_UP, SKIP }
+
+        interface PeriodicTask {
+            // periods is 1 unless earlier periods were missed under the SKIP policy
+            void run(int periods);
+        }
+
+        /** Jitter and missed-tick counts at one point in time. */
+        static class Stats {
+            final long runs;
+            final long missedPeriods;
+            final long failedRuns;
+            final double meanJitterMicros;
+            final double stdDevJitterMicros;
+            final double maxJitterMicros;
+
+            Stats(long runs, long missedPeriods, long failedRuns, double meanJitterMicros, double stdDevJitterMicros,
+                  double maxJitterMicros) {
+                this.runs = runs;
+                this.missedPeriods = missedPeriods;
+                this.failedRuns = failedRuns;
+                this.meanJitterMicros = meanJitterMicros;
+                this.stdDevJitterMicros = stdDevJitterMicros;
+                this.maxJitterMicros = maxJitterMicros;
+            }
+
+            @Override
+            public String toString() {
+                return String.format("runs=%d missed=%d failed=%d jitter mean=%.1f us sd=%.1f us max=%.1f us",
+                        runs, missedPeriods, failedRuns, meanJitterMicros, stdDevJitterMicros, maxJitterMicros);
+            }
+        }
+
+        private final ScheduledExecutorService executor;
+        private final boolean ownsExecutor;
+        private final long periodNanos;
+        private final MissedTickPolicy policy;
+        private final PeriodicTask task;
+        private volatile boolean running = false;
+        private boolean closed = false;
+        private volatile ScheduledFuture<?> pending;
+        private long nextDeadline;
+
+        // Jitter statistics (Welford), guarded by this
+        private long runs = 0;
+        private long missedPeriods = 0;
+        private long failedRuns = 0;
+        private double jitterMean = 0.0;
+        private double jitterM2 = 0.0;
+        private long jitterMax = 0;
+
+        public TickScheduler(long period, TimeUnit unit, MissedTickPolicy policy, PeriodicTask task) {
+            this(Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "tick-scheduler");
+                t.setDaemon(true);
+                return t;
+            }), true, period, unit, policy, task);
+        }
+
+        // Runs on a caller-owned executor, which is left running on stop() and close()
+        public TickScheduler(ScheduledExecutorService executor, long period, TimeUnit unit,
+                             MissedTickPolicy policy, PeriodicTask task) {
+            this(executor, false, period, unit, policy, task);
+        }
+
+        private TickScheduler(ScheduledExecutorService executor, boolean ownsExecutor, long period, TimeUnit unit,
+                              MissedTickPolicy policy, PeriodicTask task) {
+            if (period <= 0) {
+                throw new IllegalArgumentException("period must be positive: " + period);
+            }
+            this.executor = executor;
+            this.ownsExecutor = ownsExecutor;
+            this.periodNanos = unit.toNanos(period);
+            this.policy = policy;
+            this.task = task;
+        }
+
+        // First run is immediate; later runs are due at start + n * period
+        public synchronized void start() {
+            if (closed) {
+                throw new IllegalStateException("TickScheduler is closed");
+            }
+            if (running) return;
+            running = true;
+            nextDeadline = System.nanoTime();
+            scheduleNext();
+        }
+
+        public synchronized void stop() {
+            running = false;
+            ScheduledFuture<?> f = pending;
+            if (f != null) f.cancel(false);
+        }
+
+        // Stops for good; a scheduler that created its own executor shuts it down here
+        public synchronized void close() {
+            stop();
+            if (closed) return;
+            closed = true;
+            if (ownsExecutor) executor.shutdown();
+        }
+
+        public boolean isRunning() {
+            return running;
+        }
+
+        private void scheduleNext() {
+            pending = executor.schedule(this::fire, Math.max(0, nextDeadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        }
+
+        private void fire() {
+            if (!running) return;
+            long lateness = Math.max(0, System.nanoTime() - nextDeadline);
+            int periods = (int) Math.min(Integer.MAX_VALUE, 1 + lateness / periodNanos);
+            record(lateness, periods - 1);
+            nextDeadline += periods * periodNanos;
+            // A failing run is reported and counted; it must not end the schedule
+            try {
+                if (policy == MissedTickPolicy.CATCH_UP) {
+                    for (int i = 0; i < periods && running; i++) {
+                        task.run(1);
+                    }
+                } else {
+                    task.run(periods);
+                }
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+                synchronized (this) {
+                    failedRuns++;
+                }
+            }
+            synchronized (this) {
+                if (running) scheduleNext();
+            }
+        }
+
+        private synchronized void record(long latenessNanos, int missed) {
+            runs++;
+            missedPeriods += missed;
+            double delta = latenessNanos - jitterMean;
+            jitterMean += delta / runs;
+            jitterM2 += delta * (latenessNanos - jitterMean);
+            if (latenessNanos > jitterMax) jitterMax = latenessNanos;
+        }
+
+        public synchronized Stats getStats() {
+            double stdDev = runs > 1 ? Math.sqrt(jitterM2 / (runs - 1)) : 0.0;
+            return new Stats(runs, missedPeriods, failedRuns, jitterMean / 1e3, stdDev / 1e3, jitterMax / 1e3);
+        }
+
+        // Usage: TickScheduler [periodMs] [seconds] [CATCH_UP|SKIP] [stallEvery]
+        // Runs a task that stalls for 2.5 periods every stallEvery runs and shows that no simulated time is lost
+        public static void main(String[] args) throws InterruptedException {
+            long periodMs = args.length > 0 ? Long.parseLong(args[0]) : 10;
+            int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+            MissedTickPolicy policy = args.length > 2 ? MissedTickPolicy.valueOf(args[2].toUpperCase()) : MissedTickPolicy.SKIP;
+            int stallEvery = args.length > 3 ? Integer.parseInt(args[3]) : 50;
+
+            AtomicLong periodsSeen = new AtomicLong();
+            AtomicLong calls = new AtomicLong();
+            TickScheduler scheduler = new TickScheduler(periodMs, TimeUnit.MILLISECONDS, policy, periods -> {
+                periodsSeen.addAndGet(periods);
+                if (calls.incrementAndGet() % stallEvery == 0) {
+                    try {
+                        Thread.sleep(periodMs * 5 / 2);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+            long start = System.nanoTime();
+            scheduler.start();
+            Thread.sleep(seconds * 1000L);
+            scheduler.close();
+            double elapsedMs = (System.nanoTime() - start) / 1e6;
+
+            System.out.println("Policy: " + policy + ", period " + periodMs + " ms, " + seconds + " s");
+            System.out.println(scheduler.getStats());
+            System.out.println("Task calls: " + calls.get() + ", periods accounted: " + periodsSeen.get()
+                    + ", periods elapsed: " + String.format("%.1f", elapsedMs / periodMs));
+        }
+    }
+
+    /**
+     * Lifecycle of the interactive simulation: one daemon thread, one clock and at most one running display.
+     * Start, stop and reset are queued onto that thread, so they never race a cycle in progress, and a
+     * stopped run leaves no timer, thread or listener behind. Month and window inputs may change at any time
+     * and are read at the next cycle; setpoint and window changes also re-run the actuators straight away,
+     * with the bill corrected for the rest of the current cycle.
+     */
+    static class SimulationSession {
+        static final int TICK_SECONDS = HeadlessSimulationEngine.DEFAULT_TICK_SECONDS;
+        static final int CLOCK_POLL_MS = 50;
+        static final int MIN_LEAK_CHECK_RESETS = 1000;
+
+        private final SimulationClock clock;
+        private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "simulation-session");
+            t.setDaemon(true);
+            return t;
+        });
+
+        private final ControlPlane controls;
+        private volatile boolean running = false;
+
+        // Confined to the session thread
+        private ThermostatDisplay display;
+        private boolean cycled = false;
+        private volatile TickScheduler scheduler;
+        private final ThermostatDisplay.SimulationResult result = new ThermostatDisplay.SimulationResult();
+        private final ControlPlane.ChangeListener controlListener = this::onControlChange;
+        private TickPipeline pipeline;
+
+        // Control-to-actuator latency (Welford), guarded by this
+        private long reactions = 0;
+        private double reactionMean = 0.0;
+        private double reactionM2 = 0.0;
+        private long reactionMax = 0;
+
+        public SimulationSession(SimulationClock clock) {
+            this(clock, ControlPlane.SHARED);
+        }
+
+        public SimulationSession(SimulationClock clock, ControlPlane controls) {
+            this.clock = clock;
+            this.controls = controls;
+            controls.addListener(controlListener);
+        }
+
+        public void setMonth(String month) {
+            controls.setMonth(month);
+        }
+
+        public void setWindowOpen(boolean windowOpen) {
+            controls.setWindowOpen(windowOpen);
+        }
+
+        public SimulationClock getClock() {
+            return clock;
+        }
+
+        public ControlPlane getControls() {
+            return controls;
+        }
+
+        public boolean isRunning() {
+            return running;
+        }
+
+        public void start() {
+            executor.execute(this::startNow);
+        }
+
+        public void stop() {
+            executor.execute(this::stopNow);
+        }
+
+        // Stop, clear whatever onReset clears, and start again with a fresh bill and runtime
+        public void reset() {
+            executor.execute(() -> {
+                stopNow();
+                onReset();
+                startNow();
+            });
+        }
+
+        // Stop the run and release the session thread; the session cannot be restarted afterwards.
+        // The pipeline is closed on the session thread after the run has stopped, so no cycle is published to it later.
+        public void shutdown() {
+            controls.removeListener(controlListener);
+            executor.execute(() -> {
+                stopNow();
+                synchronized (this) {
+                    if (pipeline != null) pipeline.close();
+                }
+            });
+            executor.shutdown();
+        }
+
+        // Block until every previously queued start/stop/reset has been applied
+        public void awaitIdle() throws InterruptedException {
+            try {
+                executor.submit(() -> { }).get();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+
+        // Called on the session thread between the old and the new run of a reset
+        protected void onReset() {
+        }
+
+        // Called on the session thread after every cycle, once it has been billed; at high warp that is hundreds of
+        // calls per poll. By default the cycle is copied onto the pipeline: log and history see every cycle, while
+        // console and live values drop what they cannot keep up with, so only the display is throttled.
+        protected void onCycle(ThermostatDisplay display, ThermostatDisplay.SimulationResult result) {
+            getPipeline().publish(new TickPipeline.TickEvent(display, display.getRoomId(), display.getTotalRuntimeSeconds(),
+                    TICK_SECONDS, display.getSettings(), new ThermostatDisplay.SimulationResult().copyFrom(result),
+                    display.getBill().getTotalCost()));
+        }
+
+        // Consumers of the session's cycles; further sinks may subscribe at any time
+        public synchronized TickPipeline getPipeline() {
+            if (pipeline == null) {
+                pipeline = new TickPipeline();
+                pipeline.subscribe("log", e -> e.source.logToFile(e.result, e.simulatedSeconds, e.totalCost),
+                        1024, TickPipeline.OverflowPolicy.BLOCK);
+                pipeline.subscribe("history", e -> e.source.appendToHistory(e.result, e.simulatedSeconds),
+                        1024, TickPipeline.OverflowPolicy.BLOCK);
+                pipeline.subscribe("console", e -> e.source.printToConsole(e.result, e.simulatedSeconds, e.settings, e.totalCost),
+                        16, TickPipeline.OverflowPolicy.DROP);
+                pipeline.subscribe("dashboard", e -> e.source.publishLiveValues(e.result, e.settings, e.totalCost),
+                        4, TickPipeline.OverflowPolicy.DROP);
+            }
+            return pipeline;
+        }
+
+        public TickScheduler.Stats getSchedulerStats() {
+            TickScheduler s = scheduler;
+            return s != null ? s.getStats() : null;
+        }
+
+        public synchronized String getReactionStats() {
+            double sd = reactions > 1 ? Math.sqrt(reactionM2 / (reactions - 1)) : 0.0;
+            return String.format("control reactions=%d latency mean=%.1f us sd=%.1f us max=%.1f us",
+                    reactions, reactionMean / 1e3, sd / 1e3, reactionMax / 1e3);
+        }
+
+        // Runs on the writer's thread (usually the EDT); the work itself is queued onto the session thread
+        private void onControlChange(ControlSettings before, ControlSettings after, long changedAtNanos) {
+            if (!running) return;
+            if (before.desiredTemp == after.desiredTemp && before.windowOpen == after.windowOpen) return;
+            executor.execute(() -> reactToControlChange(changedAtNanos));
+        }
+
+        private void reactToControlChange(long changedAtNanos) {
+            ThermostatDisplay d = display;
+            if (d == null || !cycled) return;
+            double remaining = Math.max(0.0, TICK_SECONDS - clock.pendingSeconds());
+            d.reevaluate(controls.current(), remaining, result);
+            recordReaction(System.nanoTime() - changedAtNanos);
+            onCycle(d, result);
+        }
+
+        private synchronized void recordReaction(long nanos) {
+            reactions++;
+            double delta = nanos - reactionMean;
+            reactionMean += delta / reactions;
+            reactionM2 += delta * (nanos - reactionMean);
+            if (nanos > reactionMax) reactionMax = nanos;
+        }
+
+        private void startNow() {
+            if (running) return;
+            ControlSettings c = controls.current();
+            display = new ThermostatDisplay(new TemperatureSensor(c.baseTemp), new AirConditioner(),
+                    new SecondaryAirConditioner(), new HumidityCalculator(c.baseHumidity), new Humidifier(),
+                    new SmartFan(), new Heater(), new ElectricityBill(), controls, new SplittableRandom());
+            cycled = false;
+            clock.reset();
+            clock.step(TICK_SECONDS); // First cycle right away
+            // The clock measures real elapsed time, so late polls fold into the next one and speed changes need no restart
+            scheduler = new TickScheduler(executor, CLOCK_POLL_MS, TimeUnit.MILLISECONDS,
+                    TickScheduler.MissedTickPolicy.SKIP, periods -> runDueTicks());
+            running = true;
+            scheduler.start();
+        }
+
+        private void stopNow() {
+            if (!running) return;
+            running = false;
+            scheduler.close();
+            display = null;
+        }
+
+        private void runDueTicks() {
+            ThermostatDisplay d = display;
+            int due = clock.advance(TICK_SECONDS);
+            if (due == 0 || d == null) return;
+            for (int i = 0; i < due; i++) {
+                ControlSettings c = controls.current(); // One snapshot per cycle
+                d.resetSensors(c.baseTemp, c.baseHumidity);
+                d.tick(TICK_SECONDS, c, result);
+                cycled = true;
+                onCycle(d, result);
+            }
+        }
+
+        // Heap still in use right after the last collection, so objects allocated since then are not counted
+        private static long retainedHeapKb() {
+            long used = 0;
+            for (java.lang.management.MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                java.lang.management.MemoryUsage u = pool.getCollectionUsage();
+                if (pool.getType() == java.lang.management.MemoryType.HEAP && u != null) used += u.getUsed();
+            }
+            return used / 1024;
+        }
+
+        // Usage: SimulationSession [resets] [controlEvents]
+        // Soak test: resets a session repeatedly with its real pipeline and reports live threads and retained heap,
+        // then moves the setpoint repeatedly at 1x and reports how long the actuators took to react.
+        // Exits with status 1 if threads or retained heap (beyond 512 KB of slack) grew from the first report after the
+        // warm-up (the first half of the resets) to the last one. Heap settles within about 500 resets, so shorter
+        // runs than MIN_LEAK_CHECK_RESETS are reported without the check.
+        public static void main(String[] args) throws InterruptedException {
+            int resets = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+            int controlEvents = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+            int reportEvery = Math.max(1, resets / 10);
+            AtomicLong cycles = new AtomicLong();
+            SimulationClock clock = new SimulationClock();
+            clock.setWarp(SimulationClock.MAX_WARP);
+            SimulationSession session = new SimulationSession(clock);
+            session.getPipeline().subscribe("count", e -> cycles.incrementAndGet(), 1024, TickPipeline.OverflowPolicy.BLOCK);
+            // The console sink still runs, but its lines are discarded so the report stays readable
+            java.io.PrintStream out = System.out;
+            System.setOut(new java.io.PrintStream(java.io.OutputStream.nullOutputStream()));
+            java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            int warmUpResets = resets / 2;
+            int firstThreads = -1;
+            int lastThreads = -1;
+            long firstHeapKb = -1;
+            long lastHeapKb = -1;
+            session.start();
+            session.awaitIdle();
+            out.println(String.format("%8s %8s %12s %10s", "resets", "threads", "heap used KB", "cycles"));
+            for (int i = 1; i <= resets; i++) {
+                session.reset();
+                if (i % 100 == 0) {
+                    session.awaitIdle();
+                    Thread.sleep(CLOCK_POLL_MS); // Let the restarted run poll its clock a few times
+                }
+                if (i % reportEvery == 0) {
+                    session.awaitIdle();
+                    System.gc();
+                    lastThreads = threads.getThreadCount();
+                    lastHeapKb = retainedHeapKb();
+                    if (firstThreads < 0 && i >= warmUpResets) {
+                        firstThreads = lastThreads;
+                        firstHeapKb = lastHeapKb;
+                    }
+                    out.println(String.format("%8d %8d %12d %10d", i, lastThreads, lastHeapKb, cycles.get()));
+                }
+            }
+
+            clock.setWarp(SimulationClock.MIN_WARP);
+            session.awaitIdle();
+            for (int i = 0; i < controlEvents; i++) {
+                session.getControls().setDesiredTemp(16 + i % 15);
+                Thread.sleep(7);
+            }
+            session.awaitIdle();
+            out.println(session.getReactionStats());
+            session.shutdown();
+            System.setOut(out);
+            // Queued log and console events move the retained heap by a few hundred KB; one leaked room per reset
+            // would add megabytes
+            if (resets < MIN_LEAK_CHECK_RESETS) {
+                System.out.println("Leak check skipped: needs at least " + MIN_LEAK_CHECK_RESETS + " resets");
+            } else if (lastThreads > firstThreads || lastHeapKb > firstHeapKb + 512) {
+                System.out.println("Leak after " + warmUpResets + " warm-up resets: threads " + firstThreads
+                        + " -> " + lastThreads + ", heap " + firstHeapKb + " KB -> " + lastHeapKb + " KB");
+                System.exit(1);
+            }
+        }
+    }
+
+    // ThermostatDisplay: extract logic into helpers
+    static class ThermostatDisplay {
+
+        public static boolean isWindowOpenControl() {
+            return ControlPlane.SHARED.current().windowOpen;
+        }
+        
+        public static double getDesiredTempControl() {
+            return ControlPlane.SHARED.current().desiredTemp;
+        }
+        
+        // Helper to get base temp/humidity for a month
+        static double[] getBaseTempHumidity(String month) {
+            return switch (month.toLowerCase()) {
+                case "january" -> new double[]{14, 65};
+                case "february" -> new double[]{17, 60};
+                case "march" -> new double[]{22, 50};
+                case "april" -> new double[]{28, 35};
+                case "may" -> new double[]{33, 38};
+                case "june" -> new double[]{34, 58};
+                case "july" -> new double[]{31, 75};
+                case "august" -> new double[]{30, 80};
+                case "september" -> new double[]{29, 75};
+                case "october" -> new double[]{26, 60};
+                case "november" -> new double[]{20, 55};
+                case "december" -> new double[]{15, 65};
+                default -> new double[]{22, 50};
+            };
+        }
+        private TemperatureSensor sensor;
+        private AirConditioner ac;
+        private AirConditioner secondaryAC;
+        private final HumidityCalculator humidityCalculator;
+        private final Humidifier humidifier;
+        private SmartFan smartFan;
+        private Heater heater;
+        private ElectricityBill bill;
+        private final ControlPlane controls;
+        private ControlSettings settings; // Snapshot used by the latest cycle
+        // Readings of the latest cycle, kept so a control change can re-run the actuators alone
+        private int sensedPeople;
+        private double sensedTemp;
+        private double sensedHumidity;
+        private double sensedReplacementTemp; // NaN unless the cycle's reading was out of range
+        private final SplittableRandom occupancyRandom;
+        private int totalRuntimeSeconds = 0;
+        private int roomId = 0; // Tags this display's records in a shared binary log
+
+        public void incrementRuntimeSeconds(int seconds) {
+            this.totalRuntimeSeconds += seconds;
+        }
+
+        public void setTotalRuntimeSeconds(int seconds) {
+            this.totalRuntimeSeconds = seconds;
+        }
+
+        public void addToTotalRuntimeSeconds(int seconds) {
+            this.totalRuntimeSeconds += seconds;
+        }
+
+        public void updateTotalRuntimeSeconds(int seconds) {
+            this.totalRuntimeSeconds = seconds;
+        }
+
+        protected void incrementTotalRuntimeSeconds(int seconds) {
+            this.totalRuntimeSeconds += seconds;
+        }
+
+        public int getTotalRuntimeSeconds() {
+            return totalRuntimeSeconds;
+        }
+
+        public int getRoomId() {
+            return roomId;
+        }
+
+        public void setRoomId(int roomId) {
+            this.roomId = roomId;
+        }
+
+        public ElectricityBill getBill() {
+            return bill;
+        }
+
+        public ControlPlane getControls() {
+            return controls;
+        }
+
+        // Snapshot the latest cycle ran with
+        public ControlSettings getSettings() {
+            return settings;
+        }
+
+        // Helper: put both sensors back to the base readings before a cycle
+        public void resetSensors(double baseTemp, double baseHumidity) {
+            sensor.setTemperature(baseTemp);
+            humidityCalculator.setHumidity(baseHumidity);
+        }
+        public ThermostatDisplay(TemperatureSensor sensor, AirConditioner ac, AirConditioner secondaryAC,
+                                 HumidityCalculator humidityCalculator, Humidifier humidifier, SmartFan smartFan,
+                                 Heater heater, ElectricityBill bill, boolean windowOpen) {
+            this(sensor, ac, secondaryAC, humidityCalculator, humidifier, smartFan, heater, bill, windowOpen,
+                    new SplittableRandom());
+        }
+
+        // Follows the dashboard's controls, as before, with this room's window state pinned
+        public ThermostatDisplay(TemperatureSensor sensor, AirConditioner ac, AirConditioner secondaryAC,
+                                 HumidityCalculator humidityCalculator, Humidifier humidifier, SmartFan smartFan,
+                                 Heater heater, ElectricityBill bill, boolean windowOpen, SplittableRandom occupancyRandom) {
+            this(sensor, ac, secondaryAC, humidityCalculator, humidifier, smartFan, heater, bill,
+                    new ControlPlane(ControlPlane.SHARED, s -> s.withWindowOpen(windowOpen)), occupancyRandom);
+        }
+
+        // Controls come from the given plane; pass ControlPlane.SHARED to follow the dashboard
+        public ThermostatDisplay(TemperatureSensor sensor, AirConditioner ac, AirConditioner secondaryAC,
+                                 HumidityCalculator humidityCalculator, Humidifier humidifier, SmartFan smartFan,
+                                 Heater heater, ElectricityBill bill, ControlPlane controls, SplittableRandom occupancyRandom) {
+            this.occupancyRandom = occupancyRandom;
+            this.sensor = sensor;
+            this.ac = ac;
+            this.secondaryAC = secondaryAC;
+            this.humidityCalculator = humidityCalculator;
+            this.humidifier = humidifier;
+            this.smartFan = smartFan;
+            this.heater = heater;
+            this.bill = bill;
+            this.controls = controls;
+            this.settings = controls.current();
+        }
+
+        // Helper: calculate all simulation values for this cycle
+        public SimulationResult calculateSimulation() {
+            return calculateSimulation(new SimulationResult());
+        }
+
+        // Same as calculateSimulation() but writes into a caller-owned slot, so steady-state runs allocate nothing
+        public SimulationResult calculateSimulation(SimulationResult into) {
+            return calculateSimulation(controls.current(), into);
+        }
+
+        // All controls for the cycle come from the one snapshot, however often they change meanwhile
+        public SimulationResult calculateSimulation(ControlSettings settings, SimulationResult into) {
+            sensedPeople = occupancyRandom.nextInt(21);
+            sensedTemp = sensor.getTemperature() + (sensedPeople * 1);
+            sensedHumidity = humidityCalculator.getHumidity() + (sensedPeople * 0.1);
+            sensedReplacementTemp = outOfRangeReplacement(settings, sensedTemp);
+            return actuate(settings, into);
+        }
+
+        // Out-of-band re-evaluation after a control change: the cycle keeps its occupancy and readings, including
+        // any out-of-range correction, and draws nothing from its random streams; only the actuator outputs change. The rest of the cycle was billed at the old power, so only the difference is added.
+        public SimulationResult reevaluate(ControlSettings settings, double remainingSeconds, SimulationResult current) {
+            double billedPower = current.totalPower;
+            actuate(settings, current);
+            if (remainingSeconds > 0) {
+                bill.addConsumption(current.totalPower - billedPower, remainingSeconds);
+            }
+            return current;
+        }
+
+        // Helper: controls and actuators for the readings of the current cycle
+        private SimulationResult actuate(ControlSettings settings, SimulationResult into) {
+            this.settings = settings;
+            applyReadings(settings, sensedPeople, sensedTemp, sensedReplacementTemp, sensedHumidity, into);
+            return control(settings.desiredTemp, into);
+        }
+
+        // Sensing half of a cycle for staged pipelines: occupancy and readings go into the slot, the actuator
+        // fields are left for control(). Only this half uses random state, so the halves may run on different threads.
+        public SimulationResult sense(ControlSettings settings, SimulationResult into) {
+            int people = occupancyRandom.nextInt(21);
+            double rawTemp = sensor.getTemperature() + (people * 1);
+            double humidity = humidityCalculator.getHumidity() + (people * 0.1);
+            return applyReadings(settings, people, rawTemp, outOfRangeReplacement(settings, rawTemp), humidity, into);
+        }
+
+        // Helper: a reading above 45 °C after the window effect is a sensor fault and gets a random stand-in.
+        // Decided once, while sensing, so later re-evaluations of the cycle reuse it.
+        private double outOfRangeReplacement(ControlSettings settings, double rawTemp) {
+            return windowAdjusted(settings, rawTemp) > 45.0 ? occupancyRandom.nextInt(40) : Double.NaN;
+        }
+
+        private static double windowAdjusted(ControlSettings settings, double rawTemp) {
+            return settings.windowOpen ? rawTemp - 1.5 : rawTemp;
+        }
+
+        // Helper: window effect, or the stand-in for an out-of-range reading
+        private SimulationResult applyReadings(ControlSettings settings, int people, double rawTemp, double replacementTemp,
+                                               double humidity, SimulationResult into) {
+            double temp = Double.isNaN(replacementTemp) ? windowAdjusted(settings, rawTemp) : replacementTemp;
+            into.people = people;
+            into.temp = temp;
+            into.humidity = humidity;
+            return into;
+        }
+
+        // Control half of a cycle: actuator powers for the readings already in the slot
+        public SimulationResult control(double desiredTemp, SimulationResult into) {
+            int people = into.people;
+            double temp = into.temp;
+            double humidity = into.humidity;
+            
+            // Determine if heating or cooling is needed based on desired temperature
+            double tempDiff = temp - desiredTemp;
+            
+            double acPower = 0.0;
+            double secondaryACPower = 0.0;
+            double heaterPower = 0.0;
+            
+            if (tempDiff > 0) {  // Room is too warm, use AC
+                acPower = (people == 0) ? 0.0 : ac.calculatePower(temp, desiredTemp);
+                secondaryACPower = (people > 10) ? secondaryAC.calculatePower(temp, desiredTemp) : 0.0;
+                heaterPower = 0.0;  // Ensure heater is off
+            } else {  // Room is too cool, use heater
+                acPower = 0.0;  // Ensure AC is off
+                secondaryACPower = 0.0;  // Ensure secondary AC is off
+                heaterPower = heater.calculatePower(temp);
+            }
+            
+            double humidifierPower = humidifier.calculatePower(humidity);
+            double fanPower = (people >= 6) ? smartFan.calculatePower(temp) : 0.0;
+            temp += heaterPower / 600.0; // simulate heating effect
+            double totalPower = acPower + secondaryACPower + humidifierPower + fanPower + heaterPower;
+            return into.set(people, temp, humidity, acPower, secondaryACPower, humidifierPower, fanPower, heaterPower, totalPower);
+        }
+
+        // Helper: advance the model by one cycle of the given length and bill it
+        public SimulationResult tick(int seconds) {
+            return tick(seconds, new SimulationResult());
+        }
+
+        public SimulationResult tick(int seconds, SimulationResult into) {
+            return tick(seconds, controls.current(), into);
+        }
+
+        public SimulationResult tick(int seconds, ControlSettings settings, SimulationResult into) {
+            totalRuntimeSeconds += seconds;
+            SimulationResult result = calculateSimulation(settings, into);
+            bill.addConsumption(result.totalPower, seconds);
+            return result;
+        }
+
+        // Helper: display simulation output
+        // Runs on the simulation thread; the dashboard picks up the published values at its own frame rate
+        protected void displayOutput(SimulationResult result) {
+            printToConsole(result, totalRuntimeSeconds, settings, bill.getTotalCost());
+            publishToDashboard(result, totalRuntimeSeconds, settings);
+        }
+
+        // Helper: warning shown on the dashboard for one cycle
+        private static String warningFor(SimulationResult result, ControlSettings settings) {
+            if (result.temp > settings.desiredTemp) {
+                return "🔥 ALERT: Room is overheating!";
+            } else if (result.people == 0) {
+                return "⚠️ No one is in the room. AC is off.";
+            } else if (result.totalPower > 2500) {
+                return "💡 Tip: Reduce room temp by 1°C to save ~7% energy.";
+            }
+            return "";
+        }
+
+        // Helper: console report for one cycle; runtime, controls and cost are passed in so a consumer thread can call it
+        protected void printToConsole(SimulationResult result, long runtimeSeconds, ControlSettings settings, double totalCost) {
+            System.out.println("People in room: " + result.people);
+            if (result.people == 0) {
+                System.out.println("⚠️ Warning: No one is in the room. AC is off.");
+            }
+            System.out.println("Current Room Temperature: " + result.temp + " °C");
+            System.out.println("Primary AC Power Consumption: " + result.acPower + " W");
+            System.out.println("Secondary AC Power Consumption: " + result.secondaryACPower + " W");
+            System.out.println("Current Room Humidity: " + result.humidity + " %");
+            System.out.println("Humidifier Power Consumption: " + result.humidifierPower + " W");
+            System.out.println("Smart Fan Power Consumption: " + result.fanPower + " W");
+            System.out.println("Heater Power Consumption: " + result.heaterPower + " W");
+            if (runtimeSeconds > 86400) {
+                System.out.println("🛠️ Maintenance Alert: AC runtime exceeded 24 hours.");
+            }
+            System.out.println("Total Electricity Cost: $" + totalCost);
+            if (result.people > 0) {
+                double totalKWh = result.totalPower * 3 / 3600000.0;
+                double perPersonKWh = totalKWh / result.people;
+                System.out.println("Energy used per person: " + Math.round(perPersonKWh * 100000.0) / 100000.0 + " kWh");
+            }
+            if (result.totalPower > 2500) {
+                System.out.println("💡 Tip: Reduce room temp by 1°C to save ~7% energy.");
+            }
+            System.out.println("----------------------------");
+        }
+
+        // Helper: hand one cycle to the dashboard graph and live values
+        protected void publishToDashboard(SimulationResult result, long runtimeSeconds, ControlSettings settings) {
+            appendToHistory(result, runtimeSeconds);
+            publishLiveValues(result, settings, bill.getTotalCost());
+        }
+
+        // Graph history; every cycle belongs here, so pipelines feed it from a BLOCK subscriber
+        protected void appendToHistory(SimulationResult result, long runtimeSeconds) {
+            ThermostatDashboard.updateData((int) runtimeSeconds, result.temp, result.humidity, result.totalPower);
+        }
+
+        // Live labels only show the latest cycle, so pipelines may drop some
+        protected void publishLiveValues(SimulationResult result, ControlSettings settings, double totalCost) {
+            ThermostatDashboard.updateLiveValues(
+                result.temp, result.humidity, result.totalPower, result.people,
+                result.acPower, result.heaterPower, result.fanPower, result.humidifierPower,
+                totalCost, warningFor(result, settings)
+            );
+        }
+
+        // Optional compact binary copy of every logged cycle
+        private static volatile BinaryRecordLog binaryLog;
+
+        public static void setBinaryLog(BinaryRecordLog log) {
+            binaryLog = log;
+        }
+
+        private StringBuilder logBuffer; // Created on the first entry, so rooms that never log do not carry it
+
+        // Helper: log to file through the shared background writer, so ticks never wait on disk
+        protected void logToFile(SimulationResult result) {
+            logToFile(result, totalRuntimeSeconds, bill.getTotalCost());
+        }
+
+        // Not thread-safe (shared buffer); call from one thread at a time, such as a single log consumer
+        protected void logToFile(SimulationResult result, long runtimeSeconds, double totalCost) {
+            BinaryRecordLog log = binaryLog;
+            if (log != null) {
+                log.onTick(roomId, runtimeSeconds, result);
+            }
+            if (logBuffer == null) {
+                logBuffer = new StringBuilder(512);
+            }
+            logBuffer.setLength(0);
+            result.appendLogEntry(logBuffer, totalCost);
+            AsyncLogWriter.shared().submit(logBuffer.toString());
+        }
+
+        protected TickScheduler scheduler;
+        private TickPipeline pipeline;
+
+        // Consumers of this display's cycles; created on first use so headless rooms do not pay for it
+        public synchronized TickPipeline getPipeline() {
+            if (pipeline == null) {
+                pipeline = new TickPipeline();
+            }
+            return pipeline;
+        }
+
+        // Fixed-rate, so slow cycles do not accumulate drift; a late cycle covers every period it stands for.
+        // The timer thread calculates and bills, so the bill has a single writer and each event carries the cost as of
+        // its own cycle; console, log and dashboard each consume on their own thread.
+        public void startDisplay() {
+            TickPipeline p = getPipeline();
+            p.subscribe("log", e -> logToFile(e.result, e.simulatedSeconds, e.totalCost), 1024, TickPipeline.OverflowPolicy.BLOCK);
+            p.subscribe("history", e -> appendToHistory(e.result, e.simulatedSeconds), 1024, TickPipeline.OverflowPolicy.BLOCK);
+            p.subscribe("console", e -> printToConsole(e.result, e.simulatedSeconds, e.settings, e.totalCost),
+                    16, TickPipeline.OverflowPolicy.DROP);
+            p.subscribe("dashboard", e -> publishLiveValues(e.result, e.settings, e.totalCost), 4, TickPipeline.OverflowPolicy.DROP);
+            scheduler = new TickScheduler(3000, TimeUnit.MILLISECONDS, TickScheduler.MissedTickPolicy.SKIP, periods -> {
+                int seconds = 3 * periods;
+                ControlSettings c = controls.current();
+                SimulationResult result = tick(seconds, c, new SimulationResult());
+                p.publish(new TickPipeline.TickEvent(this, 0, totalRuntimeSeconds, seconds, c, result, bill.getTotalCost()));
+            });
+            scheduler.start();
+        }
+
+        // Stop ticking; consumers finish what is already buffered and their threads end
+        public void stopDisplay() {
+            if (scheduler != null) scheduler.close();
+            synchronized (this) {
+                if (pipeline != null) {
+                    pipeline.close();
+                    pipeline = null;
+                }
+            }
+        }
+
+        public TickScheduler.Stats getSchedulerStats() {
+            return scheduler != null ? scheduler.getStats() : null;
+        }
+
+        // Helper class to bundle simulation values; mutable so headless runs can reuse one instance per room
+        public static class SimulationResult {
+            int people;
+            double temp, humidity, acPower, secondaryACPower, humidifierPower, fanPower, heaterPower, totalPower;
+            SimulationResult() {
+            }
+            SimulationResult(int people, double temp, double humidity, double acPower, double secondaryACPower,
+                             double humidifierPower, double fanPower, double heaterPower, double totalPower) {
+                set(people, temp, humidity, acPower, secondaryACPower, humidifierPower, fanPower, heaterPower, totalPower);
+            }
+            SimulationResult set(int people, double temp, double humidity, double acPower, double secondaryACPower,
+                                 double humidifierPower, double fanPower, double heaterPower, double totalPower) {
+                this.people = people;
+                this.temp = temp;
+                this.humidity = humidity;
+                this.acPower = acPower;
+                this.secondaryACPower = secondaryACPower;
+                this.humidifierPower = humidifierPower;
+                this.fanPower = fanPower;
+                this.heaterPower = heaterPower;
+                this.totalPower = totalPower;
+                return this;
+            }
+            SimulationResult copyFrom(SimulationResult other) {
+                return set(other.people, other.temp, other.humidity, other.acPower, other.secondaryACPower,
+                        other.humidifierPower, other.fanPower, other.heaterPower, other.totalPower);
+            }
+            // Text is only rendered when someone asks for it
+            void appendLogEntry(StringBuilder sb, double totalCost) {
+                sb.append("People in room: ").append(people).append('\n')
+                  .append("Current Room Temperature: ").append(temp).append(" °C\n")
+                  .append("AC Power Consumption: ").append(acPower).append(" W\n")
+                  .append("Secondary AC Power Consumption: ").append(secondaryACPower).append(" W\n")
+                  .append("Current Room Humidity: ").append(humidity).append(" %\n")
+                  .append("Humidifier Power Consumption: ").append(humidifierPower).append(" W\n")
+                  .append("Smart Fan Power Consumption: ").append(fanPower).append(" W\n")
+                  .append("Heater Power Consumption: ").append(heaterPower).append(" W\n")
+                  .append("Total Electricity Cost: $").append(totalCost).append('\n')
+                  .append("----------------------------\n");
+            }
+            @Override
+            public String toString() {
+                return "SimulationResult[people=" + people + ", temp=" + temp + ", humidity=" + humidity
+                        + ", totalPower=" + totalPower + "]";
+            }
+        }
+    }
+
+    // Grouped: Headless simulation classes
+    /**
+     * Receives every simulated cycle produced by a headless run.
+     */
+    interface TickListener {
+        // The result object may be reused after this call returns
+        void onTick(int roomId, long simulatedSeconds, ThermostatDisplay.SimulationResult result);
+    }
+
+    /**
+     * Hands cycles to independent consumers through java.util.concurrent.Flow.
+     * Each subscriber gets its own SubmissionPublisher and so its own executor, buffer size and overflow policy:
+     * a BLOCK subscriber sees every cycle and holds the producer back only once its buffer is full, while a
+     * DROP subscriber loses cycles (counted) instead, so a slow console or EDT never delays the next tick.
+     */
+    static class TickPipeline implements Flow.Publisher<TickPipeline.TickEvent>, AutoCloseable {
+        enum OverflowPolicy { BLOCK, DROP }
+
+        /** One cycle, copied so it can cross threads. */
+        static final class TickEvent {
+            final ThermostatDisplay source;
+            final int roomId;
+            final long simulatedSeconds;
+            final int tickSeconds;
+            final ControlSettings settings;
+            final ThermostatDisplay.SimulationResult result;
+            final double totalCost; // Bill after this cycle, taken by the producer; consumers never read the live bill
+
+            TickEvent(ThermostatDisplay source, int roomId, long simulatedSeconds, int tickSeconds,
+                      ControlSettings settings, ThermostatDisplay.SimulationResult result, double totalCost) {
+                this.source = source;
+                this.roomId = roomId;
+                this.simulatedSeconds = simulatedSeconds;
+                this.tickSeconds = tickSeconds;
+                this.settings = settings;
+                this.result = result;
+                this.totalCost = totalCost;
+            }
+        }
+
+        private static final class Channel {
+            final String name;
+            final SubmissionPublisher<TickEvent> publisher;
+            final OverflowPolicy policy;
+            final AtomicLong dropped = new AtomicLong();
+
+            Channel(String name, SubmissionPublisher<TickEvent> publisher, OverflowPolicy policy) {
+                this.name = name;
+                this.publisher = publisher;
+                this.policy = policy;
+            }
+        }
+
+        private final List<Channel> channels = new CopyOnWriteArrayList<>();
+        private volatile boolean closed = false;
+
+        // Default subscription: common pool, default buffer, lossless
+        @Override
+        public void subscribe(Flow.Subscriber<? super TickEvent> subscriber) {
+            subscribe("subscriber-" + channels.size(), subscriber, ForkJoinPool.commonPool(),
+                    Flow.defaultBufferSize(), OverflowPolicy.BLOCK);
+        }
+
+        public void subscribe(String name, Flow.Subscriber<? super TickEvent> subscriber, Executor executor,
+                              int bufferSize, OverflowPolicy policy) {
+            addChannel(name, executor, bufferSize, policy).publisher.subscribe(subscriber);
+        }
+
+        // Convenience: a plain consumer on a daemon thread of its own, stopped by close()
+        public void subscribe(String name, Consumer<TickEvent> sink, int bufferSize, OverflowPolicy policy) {
+            ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "tick-" + name);
+                t.setDaemon(true);
+                return t;
+            });
+            // The thread ends once the consumer has drained its buffer after close(), or has failed
+            addChannel(name, executor, bufferSize, policy).publisher.consume(sink)
+                    .whenComplete((done, failure) -> executor.shutdown());
+        }
+
+        private Channel addChannel(String name, Executor executor, int bufferSize, OverflowPolicy policy) {
+            if (bufferSize <= 0) {
+                throw new IllegalArgumentException("bufferSize must be positive: " + bufferSize);
+            }
+            if (closed) {
+                throw new IllegalStateException("pipeline is closed");
+            }
+            Channel channel = new Channel(name, new SubmissionPublisher<>(executor, bufferSize), policy);
+            channels.add(channel);
+            return channel;
+        }
+
+        // Deliver to every subscriber according to its policy; blocks only while a BLOCK subscriber's buffer is full
+        public void publish(TickEvent event) {
+            for (Channel channel : channels) {
+                if (channel.policy == OverflowPolicy.BLOCK) {
+                    channel.publisher.submit(event);
+                } else {
+                    channel.publisher.offer(event, (subscriber, dropped) -> {
+                        channel.dropped.incrementAndGet();
+                        return false;
+                    });
+                }
+            }
+        }
+
+        public Map<String, Long> getDroppedCounts() {
+            Map<String, Long> counts = new LinkedHashMap<>();
+            for (Channel channel : channels) {
+                counts.put(channel.name, channel.dropped.get());
+            }
+            return counts;
+        }
+
+        // Subscribers receive what is already buffered, then onComplete; owned threads end after that
+        @Override
+        public void close() {
+            closed = true;
+            for (Channel channel : channels) {
+                channel.publisher.close();
+            }
+        }
+    }
+
+    /**
+     * Drives a ThermostatDisplay on a simulated clock instead of a java.util.Timer.
+     * Cycles run back to back as fast as the CPU allows and no Swing/AWT class is touched,
+     * so months of operation can be simulated in seconds.
+     */
+    static class HeadlessSimulationEngine {
+        public static final int DEFAULT_TICK_SECONDS = 3;
+
+        private final int roomId;
+        private final ControlPlane controls;
+        private final int tickSeconds;
+        private final TemperatureSensor sensor;
+        private final HumidityCalculator humidityCalculator;
+        private final ElectricityBill bill;
+        private final ThermostatDisplay display;
+        private final ThermostatDisplay.SimulationResult result = new ThermostatDisplay.SimulationResult();
+        private TickListener listener;
+        private long simulatedSeconds = 0;
+        private long ticks = 0;
+
+        // Rooms built on the same plane share one snapshot of setpoint, window state and climate
+        public HeadlessSimulationEngine(int roomId, ControlPlane controls, int tickSeconds, long masterSeed) {
+            if (tickSeconds <= 0) {
+                throw new IllegalArgumentException("tickSeconds must be positive: " + tickSeconds);
+            }
+            ControlSettings initial = controls.current();
+            this.roomId = roomId;
+            this.controls = controls;
+            this.tickSeconds = tickSeconds;
+            this.sensor = new TemperatureSensor(initial.baseTemp,
+                    SimulationSeeds.stream(masterSeed, roomId, SimulationSeeds.STREAM_TEMPERATURE));
+            this.humidityCalculator = new HumidityCalculator(initial.baseHumidity,
+                    SimulationSeeds.stream(masterSeed, roomId, SimulationSeeds.STREAM_HUMIDITY));
+            this.bill = new ElectricityBill();
+            this.display = new ThermostatDisplay(sensor, new AirConditioner(), new SecondaryAirConditioner(),
+                    humidityCalculator, new Humidifier(), new SmartFan(), new Heater(), bill, controls,
+                    SimulationSeeds.stream(masterSeed, roomId, SimulationSeeds.STREAM_OCCUPANCY));
+            this.display.setRoomId(roomId);
+        }
+
+        // A room with its own plane, starting from the shared setpoint
+        public HeadlessSimulationEngine(int roomId, double baseTemp, double baseHumidity, boolean windowOpen, int tickSeconds,
+                                        long masterSeed) {
+            this(roomId, new ControlPlane(ControlPlane.SHARED.current().withClimate(baseTemp, baseHumidity)
+                    .withWindowOpen(windowOpen)), tickSeconds, masterSeed);
+        }
+
+        public HeadlessSimulationEngine(int roomId, double baseTemp, double baseHumidity, boolean windowOpen, int tickSeconds) {
+            this(roomId, baseTemp, baseHumidity, windowOpen, tickSeconds, SimulationSeeds.randomMasterSeed());
+        }
+
+        public HeadlessSimulationEngine(double baseTemp, double baseHumidity, boolean windowOpen) {
+            this(0, baseTemp, baseHumidity, windowOpen, DEFAULT_TICK_SECONDS);
+        }
+
+        public void setTickListener(TickListener listener) {
+            this.listener = listener;
+        }
+
+        // Change the setpoint on this room's plane (and so for every room sharing it)
+        public void setDesiredTemp(double desiredTemp) {
+            controls.setDesiredTemp(desiredTemp);
+        }
+
+        // Advance one cycle: sensors restart from the month baseline, as in the dashboard runner.
+        // The returned result is reused by the next step; copy it if it must outlive the call.
+        public ThermostatDisplay.SimulationResult step() {
+            ControlSettings c = controls.current();
+            sensor.setTemperature(c.baseTemp);
+            humidityCalculator.setHumidity(c.baseHumidity);
+            display.tick(tickSeconds, c, result);
+            simulatedSeconds += tickSeconds;
+            ticks++;
+            if (listener != null) {
+                listener.onTick(roomId, simulatedSeconds, result);
+            }
+            return result;
+        }
+
+        public void run(long cycles) {
+            for (long i = 0; i < cycles; i++) {
+                step();
+            }
+        }
+
+        public void runFor(long seconds) {
+            run((seconds + tickSeconds - 1) / tickSeconds);
+        }
+
+        public int getRoomId() { return roomId; }
+        public int getTickSeconds() { return tickSeconds; }
+        public long getSimulatedSeconds() { return simulatedSeconds; }
+        public long getTicks() { return ticks; }
+        public ElectricityBill getBill() { return bill; }
+        public ThermostatDisplay getDisplay() { return display; }
+        public ControlPlane getControls() { return controls; }
+
+        // Usage: HeadlessSimulationEngine [month] [days] [windowOpen] [seed]
+        public static void main(String[] args) {
+            String month = args.length > 0 ? args[0] : "January";
+            long days = args.length > 1 ? Long.parseLong(args[1]) : 365;
+            boolean windowOpen = args.length > 2 && Boolean.parseBoolean(args[2]);
+            long seed = args.length > 3 ? Long.parseLong(args[3]) : SimulationSeeds.randomMasterSeed();
+            double[] base = ThermostatDisplay.getBaseTempHumidity(month);
+
+            HeadlessSimulationEngine engine = new HeadlessSimulationEngine(0, base[0], base[1], windowOpen,
+                    DEFAULT_TICK_SECONDS, seed);
+            long start = System.nanoTime();
+            engine.runFor(days * 86400L);
+            double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+
+            System.out.println("Month: " + month + ", window open: " + windowOpen + ", seed: " + seed);
+            System.out.println("Simulated days: " + engine.getSimulatedSeconds() / 86400.0);
+            System.out.println("Cycles: " + engine.getTicks() + " in " + String.format("%.2f", elapsedSeconds) + " s ("
+                    + String.format("%.0f", engine.getTicks() / elapsedSeconds) + " cycles/s)");
+            System.out.println("Energy used: " + String.format("%.2f", engine.getBill().getTotalKWh()) + " kWh");
+            engine.getBill().displayBill();
+        }
+    }
+
+    /**
+     * Fixed-capacity history of temperature, humidity and power samples backed by primitive arrays.
+     * Appends never allocate; once full, the oldest sample is overwritten.
+     * Readers copy a consistent snapshot into a reusable View while the simulation keeps appending.
+     */
+    static class TimeSeriesStore implements TickListener {
+        public static final int SERIES_TEMP = 0;
+        public static final int SERIES_HUMIDITY = 1;
+        public static final int SERIES_POWER = 2;
+        public static final int SERIES_COUNT = 3;
+
+        private final int capacity;
+        private final long[] times;
+        private final double[][] values;
+        private int head = 0; // slot of the oldest sample
+        private int size = 0;
+        private long version = 0;
+        private long appended = 0;
+        private long clears = 0;
+
+        public TimeSeriesStore(int capacity) {
+            if (capacity < 2) {
+                throw new IllegalArgumentException("capacity must be at least 2: " + capacity);
+            }
+            this.capacity = capacity;
+            this.times = new long[capacity];
+            this.values = new double[SERIES_COUNT][capacity];
+        }
+
+        public synchronized void append(long time, double temp, double humidity, double power) {
+            int slot;
+            if (size < capacity) {
+                slot = (head + size) % capacity;
+                size++;
+            } else {
+                slot = head;
+                head = (head + 1) % capacity;
+            }
+            times[slot] = time;
+            values[SERIES_TEMP][slot] = temp;
+            values[SERIES_HUMIDITY][slot] = humidity;
+            values[SERIES_POWER][slot] = power;
+            version++;
+            appended++;
+        }
+
+        // Power is kept in kW, matching the dashboard graph
+        @Override
+        public void onTick(int roomId, long simulatedSeconds, ThermostatDisplay.SimulationResult result) {
+            append(simulatedSeconds, result.temp, result.humidity, result.totalPower / 1000.0);
+        }
+
+        public synchronized void clear() {
+            head = 0;
+            size = 0;
+            version++;
+            clears++;
+        }
+
+        public synchronized int size() { return size; }
+        public synchronized boolean isEmpty() { return size == 0; }
+        public synchronized long getVersion() { return version; }
+        public int getCapacity() { return capacity; }
+
+        public synchronized double latest(int series) {
+            return size == 0 ? 0.0 : values[series][(head + size - 1) % capacity];
+        }
+
+        // Copy all retained samples, oldest first, into the view; reuses the view's arrays
+        public synchronized void readInto(View view) {
+            copyNewest(size, view);
+        }
+
+        // Copy only the samples appended after the given append count (as far as they are still retained)
+        public synchronized void readSince(long appendedBefore, View view) {
+            copyNewest((int) Math.min(size, Math.max(0, appended - appendedBefore)), view);
+        }
+
+        // Copy the samples with fromTime <= time <= toTime plus one neighbour on each side, so lines reach the edges
+        public synchronized void readRange(long fromTime, long toTime, View view) {
+            int from = Math.max(0, firstIndexAtOrAfter(fromTime) - 1);
+            int to = Math.min(size, firstIndexAtOrAfter(toTime + 1) + 1);
+            copyRange(from, Math.max(0, to - from), view);
+        }
+
+        public synchronized long firstTime() {
+            return size == 0 ? 0 : times[head];
+        }
+
+        public synchronized long latestTime() {
+            return size == 0 ? 0 : times[(head + size - 1) % capacity];
+        }
+
+        // Binary search over logical indexes; sample times are appended in increasing order
+        private int firstIndexAtOrAfter(long time) {
+            int lo = 0;
+            int hi = size;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (times[(head + mid) % capacity] < time) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+
+        private void copyNewest(int count, View view) {
+            copyRange(size - count, count, view);
+        }
+
+        private void copyRange(int fromIndex, int count, View view) {
+            view.ensureCapacity(capacity);
+            int start = (head + fromIndex) % capacity;
+            int first = Math.min(count, capacity - start);
+            System.arraycopy(times, start, view.times, 0, first);
+            System.arraycopy(times, 0, view.times, first, count - first);
+            for (int s = 0; s < SERIES_COUNT; s++) {
+                System.arraycopy(values[s], start, view.values[s], 0, first);
+                System.arraycopy(values[s], 0, view.values[s], first, count - first);
+            }
+            view.size = count;
+            view.version = version;
+            view.appended = appended;
+            view.clears = clears;
+        }
+
+        /**
+         * Reader-owned copy of the store, safe to use on the EDT while the simulation appends.
+         */
+        static class View {
+            long[] times = new long[0];
+            double[][] values = new double[SERIES_COUNT][0];
+            int size = 0;
+            long version = -1;
+            long appended = 0;
+            long clears = 0;
+
+            private void ensureCapacity(int capacity) {
+                if (times.length >= capacity) return;
+                times = new long[capacity];
+                for (int s = 0; s < SERIES_COUNT; s++) {
+                    values[s] = new double[capacity];
+                }
+            }
+
+            public int size() { return size; }
+            public long timeAt(int i) { return times[i]; }
+            public double valueAt(int series, int i) { return values[series][i]; }
+            public double latest(int series) { return size == 0 ? 0.0 : values[series][size - 1]; }
+        }
+    }
+
+    /**
+     * Fixed-width binary record log for simulation results, written through memory-mapped segment files
+     * (base.0.bin, base.1.bin, ...). Each record is 30 bytes: time and room id as ints, temperature and humidity as
+     * floats, every actuator's power as whole 0.1 W (the actuators round to that, so powers read back exactly) and
+     * the number of people. The record count lives in each segment header, so a reader never needs to parse text.
+     */
+    static class BinaryRecordLog implements TickListener, AutoCloseable {
+        static final int MAGIC = 0x54485232; // "THR2"
+        static final int HEADER_BYTES = 64;
+        static final int RECORD_BYTES = 30;
+        private static final int COUNT_OFFSET = 16;
+
+        private final String basePath;
+        private final int recordsPerSegment;
+        private int segmentIndex = -1;
+        private MappedByteBuffer segment;
+        private int segmentRecords;
+        private long totalRecords;
+
+        public BinaryRecordLog(String basePath, int recordsPerSegment) throws IOException {
+            if (recordsPerSegment <= 0) {
+                throw new IllegalArgumentException("recordsPerSegment must be positive: " + recordsPerSegment);
+            }
+            this.basePath = basePath;
+            this.recordsPerSegment = recordsPerSegment;
+            deleteSegments(basePath);
+            openNextSegment();
+        }
+
+        static File segmentFile(String basePath, int index) {
+            return new File(basePath + "." + index + ".bin");
+        }
+
+        // A new log replaces an earlier run under the same base path, including segments beyond this run's last,
+        // so a Reader never sees a mix of two runs
+        private static void deleteSegments(String basePath) throws IOException {
+            for (int i = 0; ; i++) {
+                File file = segmentFile(basePath, i);
+                if (!file.exists()) return;
+                if (!file.delete()) {
+                    throw new IOException("Cannot remove old segment " + file);
+                }
+            }
+        }
+
+        private void openNextSegment() throws IOException {
+            if (segment != null) segment.force();
+            segmentIndex++;
+            long size = HEADER_BYTES + (long) recordsPerSegment * RECORD_BYTES;
+            try (RandomAccessFile raf = new RandomAccessFile(segmentFile(basePath, segmentIndex), "rw");
+                 FileChannel channel = raf.getChannel()) {
+                raf.setLength(0);
+                segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            }
+            segment.putInt(0, MAGIC);
+            segment.putInt(4, RECORD_BYTES);
+            segment.putInt(8, recordsPerSegment);
+            segment.putLong(COUNT_OFFSET, 0);
+            segmentRecords = 0;
+        }
+
+        public synchronized void append(long time, int roomId, ThermostatDisplay.SimulationResult r) throws IOException {
+            if (segmentRecords == recordsPerSegment) {
+                openNextSegment();
+            }
+            if (time < 0 || time > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Simulated time " + time + " s does not fit a record");
+            }
+            int pos = HEADER_BYTES + segmentRecords * RECORD_BYTES;
+            segment.putInt(pos, (int) time);
+            segment.putInt(pos + 4, roomId);
+            segment.putFloat(pos + 8, (float) r.temp);
+            segment.putFloat(pos + 12, (float) r.humidity);
+            segment.putInt(pos + 16, deciWatts(r.heaterPower, Integer.MAX_VALUE));
+            segment.putShort(pos + 20, (short) deciWatts(r.acPower, Short.MAX_VALUE));
+            segment.putShort(pos + 22, (short) deciWatts(r.secondaryACPower, Short.MAX_VALUE));
+            segment.putShort(pos + 24, (short) deciWatts(r.humidifierPower, Short.MAX_VALUE));
+            segment.putShort(pos + 26, (short) deciWatts(r.fanPower, Short.MAX_VALUE));
+            segment.putShort(pos + 28, (short) r.people);
+            segmentRecords++;
+            segment.putLong(COUNT_OFFSET, segmentRecords);
+            totalRecords++;
+        }
+
+        // The heater is uncapped, so it gets an int; the other actuators top out below 3276.7 W
+        private static int deciWatts(double watts, int max) {
+            long deci = Math.round(watts * 10.0);
+            if (!(watts >= 0) || deci > max) {
+                throw new IllegalArgumentException("Power " + watts + " W does not fit a record");
+            }
+            return (int) deci;
+        }
+
+        @Override
+        public void onTick(int roomId, long simulatedSeconds, ThermostatDisplay.SimulationResult result) {
+            try {
+                append(simulatedSeconds, roomId, result);
+            } catch (IOException e) {
+                throw new IllegalStateException("Binary log write failed", e);
+            }
+        }
+
+        public synchronized long getTotalRecords() {
+            return totalRecords;
+        }
+
+        // Segments are mapped at full size; the last one is cut down to the records it holds
+        @Override
+        public synchronized void close() {
+            if (segment == null) return;
+            segment.force();
+            segment = null;
+            try (RandomAccessFile raf = new RandomAccessFile(segmentFile(basePath, segmentIndex), "rw")) {
+                raf.setLength(HEADER_BYTES + (long) segmentRecords * RECORD_BYTES);
+            } catch (IOException e) {
+                // Some platforms refuse while the mapping is still alive; the header count still bounds the records
+            }
+        }
+
+        /**
+         * Sequential, allocation-free cursor over every record in a log's segments.
+         */
+        static class Reader {
+            private final String basePath;
+            private int segmentIndex = -1;
+            private ByteBuffer segment;
+            private long segmentRecords;
+            private long recordInSegment;
+            private int pos;
+
+            public Reader(String basePath) {
+                this.basePath = basePath;
+            }
+
+            private boolean openNextSegment() throws IOException {
+                File file = segmentFile(basePath, segmentIndex + 1);
+                if (!file.exists()) return false;
+                segmentIndex++;
+                try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+                     FileChannel channel = raf.getChannel()) {
+                    segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                }
+                if (segment.getInt(0) != MAGIC || segment.getInt(4) != RECORD_BYTES) {
+                    throw new IOException("Not a thermostat binary log: " + file);
+                }
+                segmentRecords = segment.getLong(COUNT_OFFSET);
+                recordInSegment = 0;
+                return true;
+            }
+
+            // Advance to the next record; returns false at the end of the log
+            public boolean next() throws IOException {
+                while (segment == null || recordInSegment == segmentRecords) {
+                    if (!openNextSegment()) return false;
+                }
+                pos = HEADER_BYTES + (int) recordInSegment * RECORD_BYTES;
+                recordInSegment++;
+                return true;
+            }
+
+            public long time() { return segment.getInt(pos); }
+            public int roomId() { return segment.getInt(pos + 4); }
+            public double temp() { return segment.getFloat(pos + 8); }
+            public double humidity() { return segment.getFloat(pos + 12); }
+            public double heaterPower() { return segment.getInt(pos + 16) / 10.0; }
+            public double acPower() { return segment.getShort(pos + 20) / 10.0; }
+            public double secondaryACPower() { return segment.getShort(pos + 22) / 10.0; }
+            public double humidifierPower() { return segment.getShort(pos + 24) / 10.0; }
+            public double fanPower() { return segment.getShort(pos + 26) / 10.0; }
+            public int people() { return segment.getShort(pos + 28); }
+
+            public double totalPower() {
+                return acPower() + secondaryACPower() + humidifierPower() + fanPower() + heaterPower();
+            }
+        }
+
+        // Usage: BinaryRecordLog [basePath] [days]; writes a headless run and scans it back
+        public static void main(String[] args) throws IOException {
+            String basePath = args.length > 0 ? args[0] : "thermostat_log";
+            long days = args.length > 1 ? Long.parseLong(args[1]) : 30;
+            double[] base = ThermostatDisplay.getBaseTempHumidity("July");
+
+            HeadlessSimulationEngine engine = new HeadlessSimulationEngine(base[0], base[1], false);
+            long writeStart = System.nanoTime();
+            try (BinaryRecordLog log = new BinaryRecordLog(basePath, 1 << 20)) {
+                engine.setTickListener(log);
+                engine.runFor(days * 86400L);
+            }
+            double writeSeconds = (System.nanoTime() - writeStart) / 1e9;
+
+            long readStart = System.nanoTime();
+            Reader reader = new Reader(basePath);
+            long records = 0;
+            double wattSeconds = 0.0;
+            while (reader.next()) {
+                wattSeconds += reader.totalPower() * engine.getTickSeconds();
+                records++;
+            }
+            double readSeconds = (System.nanoTime() - readStart) / 1e9;
+
+            System.out.println("Records: " + records + " (" + RECORD_BYTES + " bytes each, "
+                    + String.format("%.1f", records * (double) RECORD_BYTES / (1024 * 1024)) + " MB)");
+            System.out.println("Write: " + String.format("%.2f", writeSeconds) + " s, scan: "
+                    + String.format("%.3f", readSeconds) + " s ("
+                    + String.format("%.0f", records / readSeconds) + " records/s)");
+            System.out.println("Energy from log: " + String.format("%.2f", wattSeconds / 3600000.0)
+                    + " kWh, bill: " + String.format("%.2f", engine.getBill().getTotalKWh()) + " kWh");
+        }
+    }
+
+    /**
+     * Latest-value mailbox between the simulation and the dashboard.
+     * The simulation overwrites the snapshot every cycle and the UI reads it at its own frame rate,
+     * so cycles that arrive between two frames are coalesced instead of queued on the EDT.
+     */
+    static class LiveValuePublisher {
+        /**
+         * Immutable set of live values; the meaning of each index is defined by the publisher's user.
+         */
+        static final class Snapshot {
+            final long sequence;
+            final double[] values;
+            final String warning;
+
+            Snapshot(long sequence, double[] values, String warning) {
+                this.sequence = sequence;
+                this.values = values;
+                this.warning = warning;
+            }
+        }
+
+        private final AtomicLong published = new AtomicLong();
+        private final AtomicLong consumed = new AtomicLong();
+        private volatile Snapshot latest;
+
+        // Takes ownership of the values array
+        public void publish(double[] values, String warning) {
+            latest = new Snapshot(published.incrementAndGet(), values, warning);
+        }
+
+        public Snapshot latest() {
+            return latest;
+        }
+
+        // Called by the reader for every snapshot it actually applies
+        public void markConsumed() {
+            consumed.incrementAndGet();
+        }
+
+        public long getCoalescedCount() {
+            return published.get() - consumed.get();
+        }
+
+        public void clear() {
+            latest = null;
+        }
+    }
+
+    /**
+     * Reduces a history series to at most two points (min and max) per pixel column before drawing,
+     * so rendering cost depends on the plot width rather than on the number of stored samples.
+     * Nothing is cached between calls: GraphPanel only decimates on a full redraw, when the view is new anyway.
+     * Each series has one reusable Result, so decimating allocates nothing once the arrays have grown.
+     */
+    static class SeriesDecimator {
+        /**
+         * Decimated points of one series, valid until the next decimate() of that series.
+         */
+        static class Result {
+            long[] times = new long[0];
+            double[] values = new double[0];
+            int size = 0;
+
+            public int size() { return size; }
+            public long timeAt(int i) { return times[i]; }
+            public double valueAt(int i) { return values[i]; }
+
+            private void ensureCapacity(int capacity) {
+                if (times.length >= capacity) return;
+                times = new long[capacity];
+                values = new double[capacity];
+            }
+
+            private void add(long time, double value) {
+                times[size] = time;
+                values[size] = value;
+                size++;
+            }
+        }
+
+        private final Result[] results = new Result[TimeSeriesStore.SERIES_COUNT];
+
+        // Decimate one series of the view onto the given number of columns spanning [minTime, maxTime]
+        public Result decimate(TimeSeriesStore.View view, int series, long minTime, long maxTime, int columns) {
+            columns = Math.max(1, columns);
+            Result result = results[series];
+            if (result == null) {
+                result = new Result();
+                results[series] = result;
+            }
+            result.size = 0;
+
+            int n = view.size();
+            if (n <= 2 * columns) {
+                result.ensureCapacity(n);
+                for (int i = 0; i < n; i++) {
+                    result.add(view.timeAt(i), view.valueAt(series, i));
+                }
+                return result;
+            }
+
+            result.ensureCapacity(2 * columns + 2);
+            int column = columnOf(view.timeAt(0), minTime, maxTime, columns);
+            int minIndex = 0;
+            int maxIndex = 0;
+            for (int i = 1; i < n; i++) {
+                int c = columnOf(view.timeAt(i), minTime, maxTime, columns);
+                if (c != column) {
+                    emitColumn(view, series, minIndex, maxIndex, result);
+                    column = c;
+                    minIndex = i;
+                    maxIndex = i;
+                } else {
+                    double v = view.valueAt(series, i);
+                    if (v < view.valueAt(series, minIndex)) minIndex = i;
+                    if (v > view.valueAt(series, maxIndex)) maxIndex = i;
+                }
+            }
+            emitColumn(view, series, minIndex, maxIndex, result);
+            return result;
+        }
+
+        private static int columnOf(long time, long minTime, long maxTime, int columns) {
+            int c = (int) ((double) (time - minTime) / Math.max(1, maxTime - minTime) * columns);
+            return Math.max(0, Math.min(columns - 1, c));
+        }
+
+        // Emit the column's extremes in time order so the polyline keeps its shape
+        private static void emitColumn(TimeSeriesStore.View view, int series, int minIndex, int maxIndex, Result result) {
+            int first = Math.min(minIndex, maxIndex);
+            int second = Math.max(minIndex, maxIndex);
+            result.add(view.timeAt(first), view.valueAt(series, first));
+            if (second != first) {
+                result.add(view.timeAt(second), view.valueAt(series, second));
+            }
+        }
+    }
+
+    /**
+     * Hosts many independent rooms on one small shared scheduler.
+     * Rooms are split into contiguous shards and each shard is a single task,
+     * so thread count depends on the pool size rather than on the number of rooms.
+     */
+    static class FleetRunner {
+        private static final int SHARDS_PER_THREAD = 4;
+
+        private final HeadlessSimulationEngine[] rooms;
+        private final ControlPlane controls;
+        private final int[] shardStart;
+        private final AtomicLongArray shardTicks;
+        private final ScheduledExecutorService scheduler;
+        private final List<ScheduledFuture<?>> running = new ArrayList<>();
+        private long startNanos;
+        private long stopNanos;
+
+        public FleetRunner(int roomCount, String month, boolean windowOpen, int threads) {
+            this(roomCount, month, windowOpen, threads, SimulationSeeds.randomMasterSeed());
+        }
+
+        // Each room's random streams derive from (masterSeed, room id), so results do not depend on threads
+        public FleetRunner(int roomCount, String month, boolean windowOpen, int threads, long masterSeed) {
+            if (roomCount <= 0 || threads <= 0) {
+                throw new IllegalArgumentException("roomCount and threads must be positive");
+            }
+            // One plane for the whole fleet: a control change is a single snapshot swap, not one write per room
+            controls = new ControlPlane(ControlPlane.SHARED.current().withMonth(month).withWindowOpen(windowOpen));
+            rooms = new HeadlessSimulationEngine[roomCount];
+            for (int i = 0; i < roomCount; i++) {
+                rooms[i] = new HeadlessSimulationEngine(i, controls, HeadlessSimulationEngine.DEFAULT_TICK_SECONDS, masterSeed);
+            }
+            int shards = Math.min(roomCount, threads * SHARDS_PER_THREAD);
+            shardStart = new int[shards + 1];
+            for (int s = 0; s <= shards; s++) {
+                shardStart[s] = (int) ((long) roomCount * s / shards);
+            }
+            shardTicks = new AtomicLongArray(shards);
+            scheduler = Executors.newScheduledThreadPool(threads, r -> {
+                Thread t = new Thread(r, "fleet-worker");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+
+        // Tick every room once per period until stop() is called
+        public synchronized void start(long periodMs) {
+            if (!running.isEmpty()) return;
+            startNanos = System.nanoTime();
+            stopNanos = 0;
+            for (int s = 0; s < shardStart.length - 1; s++) {
+                final int shard = s;
+                running.add(scheduler.scheduleAtFixedRate(() -> runShard(shard, 1), 0, periodMs, TimeUnit.MILLISECONDS));
+            }
+        }
+
+        public synchronized void stop() {
+            for (ScheduledFuture<?> future : running) {
+                future.cancel(false);
+            }
+            running.clear();
+            stopNanos = System.nanoTime();
+        }
+
+        // Run every room for the given number of cycles as fast as possible and wait for completion
+        public void runCycles(long cycles) throws InterruptedException {
+            List<Future<?>> futures = new ArrayList<>();
+            startNanos = System.nanoTime();
+            for (int s = 0; s < shardStart.length - 1; s++) {
+                final int shard = s;
+                futures.add(scheduler.submit(() -> runShard(shard, cycles)));
+            }
+            try {
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Fleet shard failed", e.getCause());
+            } finally {
+                stopNanos = System.nanoTime();
+            }
+        }
+
+        private void runShard(int shard, long cycles) {
+            for (int i = shardStart[shard]; i < shardStart[shard + 1]; i++) {
+                rooms[i].run(cycles);
+            }
+            shardTicks.addAndGet(shard, cycles * (shardStart[shard + 1] - shardStart[shard]));
+        }
+
+        public void shutdown() {
+            stop();
+            scheduler.shutdownNow();
+        }
+
+        public int getRoomCount() { return rooms.length; }
+        public HeadlessSimulationEngine getRoom(int roomId) { return rooms[roomId]; }
+
+        public ControlPlane getControls() {
+            return controls;
+        }
+
+        public long getTotalTicks() {
+            long total = 0;
+            for (int s = 0; s < shardTicks.length(); s++) {
+                total += shardTicks.get(s);
+            }
+            return total;
+        }
+
+        public double getElapsedSeconds() {
+            long end = stopNanos != 0 ? stopNanos : System.nanoTime();
+            return (end - startNanos) / 1e9;
+        }
+
+        public double getTicksPerSecond() {
+            double elapsed = getElapsedSeconds();
+            return elapsed > 0 ? getTotalTicks() / elapsed : 0.0;
+        }
+
+        public double getTicksPerSecondPerRoom() {
+            return getTicksPerSecond() / rooms.length;
+        }
+
+        public double getTotalCost() {
+            double total = 0.0;
+            for (HeadlessSimulationEngine room : rooms) {
+                total += room.getBill().getTotalCost();
+            }
+            return total;
+        }
+
+        public void printReport() {
+            System.out.println("Rooms: " + rooms.length + ", shards: " + shardTicks.length());
+            System.out.println("Total ticks: " + getTotalTicks() + " in " + String.format("%.2f", getElapsedSeconds()) + " s");
+            System.out.println("Throughput: " + String.format("%.0f", getTicksPerSecond()) + " ticks/s total, "
+                    + String.format("%.1f", getTicksPerSecondPerRoom()) + " ticks/s per room");
+            System.out.println("Building cost: $" + String.format("%.2f", getTotalCost()));
+        }
+
+        private static long usedHeap() {
+            Runtime rt = Runtime.getRuntime();
+            for (int i = 0; i < 3; i++) System.gc();
+            return rt.totalMemory() - rt.freeMemory();
+        }
+
+        // Usage: FleetRunner [rooms] [threads] [cycles] [month] [seed]
+        public static void main(String[] args) throws InterruptedException {
+            int roomCount = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+            int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+            long cycles = args.length > 2 ? Long.parseLong(args[2]) : 1000;
+            String month = args.length > 3 ? args[3] : "July";
+            long seed = args.length > 4 ? Long.parseLong(args[4]) : SimulationSeeds.randomMasterSeed();
+
+            long before = usedHeap();
+            FleetRunner fleet = new FleetRunner(roomCount, month, false, threads, seed);
+            long perRoom = (usedHeap() - before) / roomCount;
+            fleet.runCycles(cycles);
+            fleet.printReport();
+            System.out.println("Heap per room: ~" + perRoom + " bytes, threads: " + threads + ", seed: " + seed);
+            fleet.shutdown();
+        }
+    }
+
+    /**
+     * Fleet cycles split into sense, control, bill and output stages joined by one preallocated ring buffer,
+     * in the style of the LMAX Disruptor. The sense stage is the single producer; each later stage follows the
+     * sequence of the stage before it (its barrier) and the producer never laps the output stage. Every stage has a
+     * thread of its own and takes all ready slots in one batch, so sensing later cycles overlaps billing and output
+     * of earlier ones. Only the sense stage touches random state, so totals match the single-threaded loop exactly.
+     */
+    static class StagedFleetPipeline {
+        private static final int SPINS_BEFORE_YIELD = 200;
+
+        /** Stage progress counter, padded so neighbouring counters do not share a cache line. */
+        static final class Sequence {
+            private static final VarHandle VALUE;
+            static {
+                try {
+                    VALUE = MethodHandles.lookup().findVarHandle(Sequence.class, "value", long.class);
+                } catch (ReflectiveOperationException e) {
+                    throw new ExceptionInInitializerError(e);
+                }
+            }
+            long p1, p2, p3, p4, p5, p6, p7;
+            private volatile long value = -1;
+            long q1, q2, q3, q4, q5, q6, q7;
+
+            long get() {
+                return (long) VALUE.getAcquire(this);
+            }
+
+            void set(long sequence) {
+                VALUE.setRelease(this, sequence);
+            }
+        }
+
+        /** One cycle of one room in flight through the stages. */
+        private static final class Slot {
+            int roomId;
+            ControlSettings settings;
+            long simulatedSeconds;
+            final ThermostatDisplay.SimulationResult result = new ThermostatDisplay.SimulationResult();
+        }
+
+        private interface SlotHandler {
+            void handle(Slot slot);
+        }
+
+        private final HeadlessSimulationEngine[] rooms;
+        private final ControlPlane controls;
+        private final Slot[] ring;
+        private final int mask;
+        private final int tickSeconds = HeadlessSimulationEngine.DEFAULT_TICK_SECONDS;
+        private final Sequence sensed = new Sequence();
+        private final Sequence controlled = new Sequence();
+        private final Sequence billed = new Sequence();
+        private final Sequence output = new Sequence();
+        private TickListener listener;
+        // First exception thrown by any stage; the others see it while waiting and stop
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        public StagedFleetPipeline(int roomCount, String month, boolean windowOpen, int ringSize, long masterSeed) {
+            if (roomCount <= 0) {
+                throw new IllegalArgumentException("roomCount must be positive: " + roomCount);
+            }
+            if (ringSize <= 0 || Integer.bitCount(ringSize) != 1) {
+                throw new IllegalArgumentException("ringSize must be a power of two: " + ringSize);
+            }
+            controls = new ControlPlane(ControlPlane.SHARED.current().withMonth(month).withWindowOpen(windowOpen));
+            rooms = new HeadlessSimulationEngine[roomCount];
+            for (int i = 0; i < roomCount; i++) {
+                rooms[i] = new HeadlessSimulationEngine(i, controls, tickSeconds, masterSeed);
+            }
+            ring = new Slot[ringSize];
+            for (int i = 0; i < ringSize; i++) {
+                ring[i] = new Slot();
+            }
+            mask = ringSize - 1;
+        }
+
+        // Receives every cycle on the output stage thread; the result is reused once the call returns
+        public void setTickListener(TickListener listener) {
+            this.listener = listener;
+        }
+
+        public ControlPlane getControls() {
+            return controls;
+        }
+
+        // Run every room for the given number of cycles through the four stage threads and wait for them.
+        // If a stage throws, every stage stops and the exception is rethrown here; the pipeline cannot run again.
+        public void runCycles(long cycles) throws InterruptedException {
+            if (failure.get() != null) {
+                throw new IllegalStateException("Pipeline stopped after a stage failed", failure.get());
+            }
+            long first = sensed.get() + 1;
+            long last = first + cycles * rooms.length - 1;
+            Thread[] stages = {
+                stageThread("stage-control", () -> follow(controlled, sensed, last, this::control)),
+                stageThread("stage-bill", () -> follow(billed, controlled, last, this::bill)),
+                stageThread("stage-output", () -> follow(output, billed, last, this::output)),
+                stageThread("stage-sense", () -> produce(first, last))
+            };
+            for (Thread t : stages) t.start();
+            for (Thread t : stages) t.join();
+            Throwable e = failure.get();
+            if (e instanceof RuntimeException) throw (RuntimeException) e;
+            if (e instanceof Error) throw (Error) e;
+        }
+
+        private Thread stageThread(String name, Runnable body) {
+            Thread t = new Thread(() -> {
+                try {
+                    body.run();
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            }, name);
+            t.setDaemon(true);
+            return t;
+        }
+
+        // Producer: claim the next slot once the output stage has released it, fill it and publish
+        private void produce(long first, long last) {
+            int room = 0;
+            for (long seq = first; seq <= last; seq++) {
+                long wrapPoint = seq - ring.length;
+                for (int spins = 0; output.get() < wrapPoint; spins++) {
+                    if (failure.get() != null) return;
+                    idle(spins);
+                }
+                Slot slot = ring[(int) (seq & mask)];
+                slot.roomId = room;
+                sense(slot);
+                sensed.set(seq);
+                if (++room == rooms.length) room = 0;
+            }
+        }
+
+        // Consumer: process everything the barrier has released, then advance this stage's sequence once
+        private void follow(Sequence own, Sequence barrier, long last, SlotHandler handler) {
+            long next = own.get() + 1;
+            int spins = 0;
+            while (next <= last) {
+                long available = barrier.get();
+                if (available < next) {
+                    if (failure.get() != null) return;
+                    idle(spins++);
+                    continue;
+                }
+                spins = 0;
+                for (long seq = next; seq <= available; seq++) {
+                    handler.handle(ring[(int) (seq & mask)]);
+                }
+                own.set(available);
+                next = available + 1;
+            }
+        }
+
+        // Spin briefly, then give the core away; stages may outnumber cores
+        private static void idle(int spins) {
+            if (spins < SPINS_BEFORE_YIELD) {
+                Thread.onSpinWait();
+            } else {
+                Thread.yield();
+            }
+        }
+
+        private void sense(Slot slot) {
+            ThermostatDisplay display = rooms[slot.roomId].getDisplay();
+            ControlSettings c = controls.current();
+            display.resetSensors(c.baseTemp, c.baseHumidity);
+            display.sense(c, slot.result);
+            slot.settings = c;
+        }
+
+        private void control(Slot slot) {
+            rooms[slot.roomId].getDisplay().control(slot.settings.desiredTemp, slot.result);
+        }
+
+        private void bill(Slot slot) {
+            ThermostatDisplay display = rooms[slot.roomId].getDisplay();
+            display.incrementRuntimeSeconds(tickSeconds);
+            display.getBill().addConsumption(slot.result.totalPower, tickSeconds);
+            slot.simulatedSeconds = display.getTotalRuntimeSeconds();
+        }
+
+        private void output(Slot slot) {
+            TickListener l = listener;
+            if (l != null) {
+                l.onTick(slot.roomId, slot.simulatedSeconds, slot.result);
+            }
+        }
+
+        public double getTotalCost() {
+            double total = 0;
+            for (HeadlessSimulationEngine room : rooms) {
+                total += room.getBill().getTotalCost();
+            }
+            return total;
+        }
+
+        // Usage: StagedFleetPipeline [rooms] [cycles] [month] [seed] [ringSize]
+        // Runs the same fleet through the single-threaded loop and through the staged pipeline and compares
+        public static void main(String[] args) throws InterruptedException {
+            int roomCount = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+            long cycles = args.length > 1 ? Long.parseLong(args[1]) : 2000;
+            String month = args.length > 2 ? args[2] : "July";
+            long seed = args.length > 3 ? Long.parseLong(args[3]) : SimulationSeeds.randomMasterSeed();
+            int ringSize = args.length > 4 ? Integer.parseInt(args[4]) : 4096;
+            long ticks = roomCount * cycles;
+
+            FleetRunner baseline = new FleetRunner(roomCount, month, false, 1, seed);
+            long start = System.nanoTime();
+            baseline.runCycles(cycles);
+            double baselineSeconds = (System.nanoTime() - start) / 1e9;
+            baseline.shutdown();
+
+            StagedFleetPipeline staged = new StagedFleetPipeline(roomCount, month, false, ringSize, seed);
+            start = System.nanoTime();
+            staged.runCycles(cycles);
+            double stagedSeconds = (System.nanoTime() - start) / 1e9;
+
+            System.out.println(String.format("%-18s %14s %14s", "", "ticks/s", "building cost"));
+            System.out.println(String.format("%-18s %14.0f %14.2f", "single-threaded", ticks / baselineSeconds, baseline.getTotalCost()));
+            System.out.println(String.format("%-18s %14.0f %14.2f", "staged (4 threads)", ticks / stagedSeconds, staged.getTotalCost()));
+            System.out.println(String.format("Speedup: %.2fx on %d core(s), ring %d, seed %d",
+                    baselineSeconds / stagedSeconds, Runtime.getRuntime().availableProcessors(), ringSize, seed));
+        }
+    }
+
+    /**
+     * Runs every room as a plain sequential loop on a thread of its own, sleeping until the room's next tick of a
+     * simulated clock. VIRTUAL uses one virtual thread per room where the runtime has them (Thread.ofVirtual,
+     * JDK 21+, looked up reflectively so this file still builds on 17); PLATFORM uses ordinary threads; TIMER is
+     * the original design of one java.util.Timer per room, kept for comparison.
+     */
+    static class ThreadPerRoomRunner {
+        enum Mode { VIRTUAL, PLATFORM, TIMER }
+
+        private static final ThreadFactory VIRTUAL_FACTORY = lookUpVirtualThreadFactory();
+
+        private final Mode mode;
+        private final HeadlessSimulationEngine[] rooms;
+        private final long periodNanos;
+        private final List<Thread> threads = new ArrayList<>();
+        private final List<Timer> timers = new ArrayList<>();
+        private final AtomicLong ticks = new AtomicLong();
+        private volatile boolean running = false;
+
+        // warp: simulated seconds per wall second, so each room ticks every tickSeconds / warp wall seconds
+        public ThreadPerRoomRunner(Mode mode, int roomCount, String month, double warp, long masterSeed) {
+            if (mode == Mode.VIRTUAL && VIRTUAL_FACTORY == null) {
+                throw new IllegalStateException("virtual threads need JDK 21 or later; running " + Runtime.version());
+            }
+            if (roomCount <= 0 || !(warp > 0)) {
+                throw new IllegalArgumentException("roomCount and warp must be positive");
+            }
+            this.mode = mode;
+            ControlPlane controls = new ControlPlane(ControlPlane.SHARED.current().withMonth(month));
+            rooms = new HeadlessSimulationEngine[roomCount];
+            for (int i = 0; i < roomCount; i++) {
+                rooms[i] = new HeadlessSimulationEngine(i, controls, HeadlessSimulationEngine.DEFAULT_TICK_SECONDS, masterSeed);
+            }
+            periodNanos = (long) (HeadlessSimulationEngine.DEFAULT_TICK_SECONDS * 1e9 / warp);
+        }
+
+        public static boolean isVirtualThreadSupported() {
+            return VIRTUAL_FACTORY != null;
+        }
+
+        // Helper: Thread.ofVirtual().factory() when the running JDK has it
+        private static ThreadFactory lookUpVirtualThreadFactory() {
+            try {
+                Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+                Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+                builder = builderType.getMethod("name", String.class, long.class).invoke(builder, "room-", 0L);
+                return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                return null;
+            }
+        }
+
+        public synchronized void start() {
+            if (running) return;
+            running = true;
+            for (HeadlessSimulationEngine room : rooms) {
+                if (mode == Mode.TIMER) {
+                    // Fixed rate, like roomLoop's absolute deadlines, so a late run does not push the later ones back
+                    Timer timer = new Timer("room-" + room.getRoomId(), true);
+                    timer.scheduleAtFixedRate(new TimerTask() {
+                        @Override
+                        public void run() {
+                            room.step();
+                            ticks.incrementAndGet();
+                        }
+                    }, 0, Math.max(1, periodNanos / 1_000_000));
+                    timers.add(timer);
+                } else {
+                    Runnable loop = () -> roomLoop(room);
+                    Thread t = mode == Mode.VIRTUAL ? VIRTUAL_FACTORY.newThread(loop) : new Thread(loop, "room-" + room.getRoomId());
+                    t.setDaemon(true);
+                    t.start();
+                    threads.add(t);
+                }
+            }
+        }
+
+        // The room's whole life: tick, then sleep until the next deadline of the simulated clock
+        private void roomLoop(HeadlessSimulationEngine room) {
+            long deadline = System.nanoTime();
+            try {
+                while (running) {
+                    room.step();
+                    ticks.incrementAndGet();
+                    deadline += periodNanos;
+                    long delay = deadline - System.nanoTime();
+                    if (delay > 0) {
+                        TimeUnit.NANOSECONDS.sleep(delay);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        public synchronized void stop() throws InterruptedException {
+            running = false;
+            for (Timer timer : timers) {
+                timer.cancel();
+            }
+            for (Thread t : threads) {
+                t.interrupt();
+            }
+            for (Thread t : threads) {
+                t.join();
+            }
+            timers.clear();
+            threads.clear();
+        }
+
+        public long getTotalTicks() {
+            return ticks.get();
+        }
+
+        // Room threads still alive; in VIRTUAL mode these are the virtual threads, which ThreadMXBean does not count
+        public synchronized int getLiveVirtualThreads() {
+            if (mode != Mode.VIRTUAL) return 0;
+            int live = 0;
+            for (Thread t : threads) {
+                if (t.isAlive()) live++;
+            }
+            return live;
+        }
+
+        public double getTargetTicksPerSecond() {
+            return rooms.length * 1e9 / periodNanos;
+        }
+
+        // Usage: ThreadPerRoomRunner [seconds] [warp] [roomCounts...]
+        // Compares the threading models per room count: throughput, CPU use and virtual-thread pinning events.
+        // Platform-thread modes above -Dthermostat.maxPlatformThreads (default 10000) are skipped.
+        public static void main(String[] args) throws InterruptedException {
+            int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+            double warp = args.length > 1 ? Double.parseDouble(args[1]) : 100;
+            int[] roomCounts = {1_000, 10_000, 100_000};
+            if (args.length > 2) {
+                roomCounts = Arrays.stream(args, 2, args.length).mapToInt(Integer::parseInt).toArray();
+            }
+            int maxPlatformThreads = Integer.getInteger("thermostat.maxPlatformThreads", 10_000);
+            com.sun.management.OperatingSystemMXBean os =
+                    (com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+            java.lang.management.ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+            int cores = Runtime.getRuntime().availableProcessors();
+
+            System.out.println(String.format("%-9s %8s %9s %13s %13s %8s %9s %8s %8s",
+                    "mode", "rooms", "start ms", "ticks/s", "target/s", "cpu %", "platform", "virtual", "pinned"));
+            for (int roomCount : roomCounts) {
+                for (Mode mode : Mode.values()) {
+                    if (mode == Mode.VIRTUAL && !isVirtualThreadSupported()) {
+                        System.out.println(String.format("%-9s %8d   (virtual threads need JDK 21+, running %s)",
+                                mode, roomCount, Runtime.version().feature()));
+                        continue;
+                    }
+                    if (mode != Mode.VIRTUAL && roomCount > maxPlatformThreads) {
+                        System.out.println(String.format("%-9s %8d   (skipped: one platform thread per room)", mode, roomCount));
+                        continue;
+                    }
+                    ThreadPerRoomRunner runner = new ThreadPerRoomRunner(mode, roomCount, "July", warp, 42);
+                    LongAdder pinned = new LongAdder();
+                    try (RecordingStream pinning = new RecordingStream()) {
+                        pinning.enable("jdk.VirtualThreadPinned").withThreshold(Duration.ofMillis(0));
+                        pinning.onEvent("jdk.VirtualThreadPinned", e -> pinned.increment());
+                        pinning.startAsync();
+
+                        long launch = System.nanoTime();
+                        runner.start();
+                        // Throughput is measured once every room is running; the launch cost is reported on its own
+                        long start = System.nanoTime();
+                        long ticksBefore = runner.getTotalTicks();
+                        long cpuBefore = os.getProcessCpuTime();
+                        Thread.sleep(seconds * 1000L);
+                        int platformThreads = threadBean.getThreadCount();
+                        int virtualThreads = runner.getLiveVirtualThreads();
+                        long ticksDone = runner.getTotalTicks() - ticksBefore;
+                        double wallSeconds = (System.nanoTime() - start) / 1e9;
+                        double cpuPercent = (os.getProcessCpuTime() - cpuBefore) / 1e9 / (wallSeconds * cores) * 100;
+                        runner.stop();
+
+                        System.out.println(String.format("%-9s %8d %9.0f %13.0f %13.0f %8.1f %9d %8d %8d",
+                                mode, roomCount, (start - launch) / 1e6, ticksDone / wallSeconds,
+                                runner.getTargetTicksPerSecond(), cpuPercent, platformThreads, virtualThreads, pinned.sum()));
+                    }
+                }
+            }
+            System.out.println("cpu % is process CPU over all " + cores + " core(s); for VIRTUAL it is the carrier threads' load");
+            System.out.println("platform is every live platform thread in the JVM (ThreadMXBean); virtual is live room threads");
+        }
+    }
+
+    /**
+     * Batch engine for large fleets that keeps room state in parallel primitive arrays instead of one object graph
+     * per room. Sensors restart from the month baseline every cycle, so a room only carries its three random streams
+     * and its metered energy: 32 bytes. A cycle runs block by block: a scalar sense loop steps each room's streams
+     * (the same SplittableRandom generator, inlined) into scratch arrays, then a control kernel evaluates the
+     * actuators for the whole block with selects instead of branches and bills the result. With the same master
+     * seed every room draws exactly what HeadlessSimulationEngine would, so bills match FleetRunner to the cent.
+     */
+    static class BatchFleetEngine {
+        static final int BLOCK = 1024;
+        static final int STATE_BYTES_PER_ROOM = 3 * Long.BYTES + Double.BYTES;
+        private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+        private static final double DOUBLE_UNIT = 0x1.0p-53;
+
+        private final ControlPlane controls;
+        private final int tickSeconds;
+        private final int roomCount;
+
+        // Per-room state
+        private final long[] occupancySeed;
+        private final long[] temperatureSeed;
+        private final long[] humiditySeed;
+        private final double[] wattSeconds;
+
+        // Per-block scratch, reused by every block and cycle
+        private final int[] people = new int[BLOCK];
+        private final double[] temp = new double[BLOCK];
+        private final double[] humidity = new double[BLOCK];
+
+        private long cycles = 0;
+
+        public BatchFleetEngine(int roomCount, ControlPlane controls, int tickSeconds, long masterSeed) {
+            if (roomCount <= 0 || tickSeconds <= 0) {
+                throw new IllegalArgumentException("roomCount and tickSeconds must be positive");
+            }
+            this.controls = controls;
+            this.tickSeconds = tickSeconds;
+            this.roomCount = roomCount;
+            occupancySeed = new long[roomCount];
+            temperatureSeed = new long[roomCount];
+            humiditySeed = new long[roomCount];
+            wattSeconds = new double[roomCount];
+            for (int i = 0; i < roomCount; i++) {
+                occupancySeed[i] = SimulationSeeds.streamSeed(masterSeed, i, SimulationSeeds.STREAM_OCCUPANCY);
+                temperatureSeed[i] = SimulationSeeds.streamSeed(masterSeed, i, SimulationSeeds.STREAM_TEMPERATURE);
+                humiditySeed[i] = SimulationSeeds.streamSeed(masterSeed, i, SimulationSeeds.STREAM_HUMIDITY);
+            }
+        }
+
+        public BatchFleetEngine(int roomCount, String month, boolean windowOpen, long masterSeed) {
+            this(roomCount, new ControlPlane(ControlPlane.SHARED.current().withMonth(month).withWindowOpen(windowOpen)),
+                    HeadlessSimulationEngine.DEFAULT_TICK_SECONDS, masterSeed);
+        }
+
+        // One cycle for every room, all on the same control snapshot
+        public void step() {
+            ControlSettings c = controls.current();
+            for (int from = 0; from < roomCount; from += BLOCK) {
+                int n = Math.min(BLOCK, roomCount - from);
+                sense(c, from, n);
+                controlAndBill(c.desiredTemp, from, n);
+            }
+            cycles++;
+        }
+
+        public void run(long cycles) {
+            for (long i = 0; i < cycles; i++) {
+                step();
+            }
+        }
+
+        // Same arithmetic, in the same order, as TemperatureSensor, HumidityCalculator and applyReadings
+        private void sense(ControlSettings c, int from, int n) {
+            double baseTemp = c.baseTemp;
+            double baseHumidity = c.baseHumidity;
+            double windowDrop = c.windowOpen ? 1.5 : 0.0;
+            for (int k = 0; k < n; k++) {
+                int room = from + k;
+                int p = nextOccupancyInt(room, 21);
+                long ts = temperatureSeed[room] + GOLDEN_GAMMA;
+                temperatureSeed[room] = ts;
+                long hs = humiditySeed[room] + GOLDEN_GAMMA;
+                humiditySeed[room] = hs;
+                double sensorTemp = baseTemp + ((SimulationSeeds.mix64(ts) >>> 11) * DOUBLE_UNIT * 5 - 5);
+                double sensorHumidity = baseHumidity + ((SimulationSeeds.mix64(hs) >>> 11) * DOUBLE_UNIT * 30 - 15);
+                double t = roundHalfUp(sensorTemp * 5) / 10.0 + (p * 1);
+                if (windowDrop != 0.0) t -= windowDrop;
+                if (t > 45.0) t = nextOccupancyInt(room, 40);
+                people[k] = p;
+                temp[k] = t;
+                humidity[k] = roundHalfUp(sensorHumidity * 10.0) / 10.0 + (p * 0.1);
+            }
+        }
+
+        // SplittableRandom.nextInt(bound) for a bound that is not a power of two, on the room's occupancy stream
+        private int nextOccupancyInt(int room, int bound) {
+            long s = occupancySeed[room] + GOLDEN_GAMMA;
+            int u = mix32(s) >>> 1;
+            int r;
+            while (u + (bound - 1) - (r = u % bound) < 0) {
+                s += GOLDEN_GAMMA;
+                u = mix32(s) >>> 1;
+            }
+            occupancySeed[room] = s;
+            return r;
+        }
+
+        // Math.round(x) as a double, for |x| < 2^52, without branches: floor is an intrinsic where Math.round is
+        // not on this JDK, and the fraction x - floor(x) and its distance from 0.5 are both exact, so the sign bit
+        // of that distance decides the step.
+        private static double roundHalfUp(double x) {
+            double floor = Math.floor(x);
+            return floor + (1 - (Double.doubleToRawLongBits(x - floor - 0.5) >>> 63));
+        }
+
+        private static int mix32(long z) {
+            z = (z ^ (z >>> 33)) * 0x62a9d9ed799705f5L;
+            return (int) (((z ^ (z >>> 28)) * 0xcb24d0a5c88c35b3L) >>> 32);
+        }
+
+        // ThermostatDisplay.control() for a whole block. Each actuator is computed for every room and then kept or
+        // zeroed by a select, so the loop has no data-dependent branches; the sum keeps control()'s order.
+        private void controlAndBill(double desiredTemp, int from, int n) {
+            int[] people = this.people;
+            double[] temp = this.temp;
+            double[] humidity = this.humidity;
+            double[] wattSeconds = this.wattSeconds;
+            int seconds = tickSeconds;
+            for (int k = 0; k < n; k++) {
+                int p = people[k];
+                double t = temp[k];
+                double diff = Math.abs(t - desiredTemp);
+                boolean cooling = t - desiredTemp > 0;
+                // Caps as plain compares: every power here is finite and non-negative, and Math.min(double)
+                // pays for NaN and -0.0 handling it does not need
+                double ac = roundHalfUp(diff * AC_POWER_PER_DEGREE * 10.0) / 10.0;
+                ac = ac < 1000.0 ? ac : 1000.0;
+                double secondary = roundHalfUp(diff * 60 * 10.0) / 10.0;
+                secondary = secondary < 750.0 ? secondary : 750.0;
+                double heat = roundHalfUp((21.0 - t) * HEATER_POWER_PER_DEGREE * 10.0) / 10.0;
+                double hum = roundHalfUp(Math.abs(humidity[k] - 50.0) * 25 * 10.0) / 10.0;
+                hum = hum < 300.0 ? hum : 300.0;
+                double acPower = ac * (cooling & p != 0 ? 1 : 0);
+                double secondaryPower = secondary * (cooling & p > 10 ? 1 : 0);
+                double heaterPower = heat * (!cooling & t < 21.0 ? 1 : 0);
+                double fanPower = 60.0 * (p >= 6 & t > 26.0 ? 1 : 0);
+                double total = acPower + secondaryPower + hum + fanPower + heaterPower;
+                wattSeconds[from + k] += total * seconds;
+            }
+        }
+
+        public int getRoomCount() { return roomCount; }
+        public long getCycles() { return cycles; }
+        public double getRoomWattSeconds(int room) { return wattSeconds[room]; }
+        public ControlPlane getControls() { return controls; }
+
+        public double getRoomKWh(int room) {
+            return wattSeconds[room] / 3600000.0;
+        }
+
+        // Rounded per room, as each room's ElectricityBill would be, then summed
+        public double getRoomCost(int room) {
+            return Math.round(getRoomKWh(room) * 8.0 * 100.0) / 100.0;
+        }
+
+        public double getTotalCost() {
+            double total = 0.0;
+            for (int i = 0; i < roomCount; i++) {
+                total += getRoomCost(i);
+            }
+            return total;
+        }
+
+        // Usage: BatchFleetEngine [rooms] [cycles] [month] [seed]
+        // Checks the bill against FleetRunner on one thread, then reports throughput and state size
+        public static void main(String[] args) throws InterruptedException {
+            int roomCount = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+            long cycles = args.length > 1 ? Long.parseLong(args[1]) : 1000;
+            String month = args.length > 2 ? args[2] : "July";
+            long seed = args.length > 3 ? Long.parseLong(args[3]) : SimulationSeeds.randomMasterSeed();
+
+            long checkCycles = Math.min(cycles, 100);
+            FleetRunner reference = new FleetRunner(roomCount, month, false, 1, seed);
+            reference.runCycles(checkCycles);
+            BatchFleetEngine check = new BatchFleetEngine(roomCount, month, false, seed);
+            check.run(checkCycles);
+            int mismatched = 0;
+            for (int i = 0; i < roomCount; i++) {
+                if (check.getRoomKWh(i) != reference.getRoom(i).getBill().getTotalKWh()) {
+                    mismatched++;
+                }
+            }
+            System.out.println(String.format("Parity over %d cycles: FleetRunner $%.2f, batch $%.2f, rooms differing: %d",
+                    checkCycles, reference.getTotalCost(), check.getTotalCost(), mismatched));
+            double referenceRate = reference.getTotalTicks() / reference.getElapsedSeconds();
+            reference.shutdown();
+
+            BatchFleetEngine engine = new BatchFleetEngine(roomCount, month, false, seed);
+            engine.run(Math.min(cycles, 200)); // Warm-up
+            // Timed in rounds so a busy machine shows up as spread between the best and the mean
+            int rounds = 10;
+            long perRound = Math.max(1, cycles / rounds);
+            double best = Double.MAX_VALUE;
+            double total = 0;
+            for (int r = 0; r < rounds; r++) {
+                long start = System.nanoTime();
+                engine.run(perRound);
+                double elapsed = (System.nanoTime() - start) / 1e9;
+                best = Math.min(best, elapsed);
+                total += elapsed;
+            }
+            double roomTicks = (double) roomCount * perRound;
+            System.out.println(String.format("Batch: %d rooms x %d cycles in %.2f s, %.1fM room-ticks/s mean, %.1fM best round"
+                    + " (FleetRunner %.1fM)", roomCount, perRound * rounds, total, roomTicks * rounds / total / 1e6,
+                    roomTicks / best / 1e6, referenceRate / 1e6));
+            System.out.println("State per room: " + STATE_BYTES_PER_ROOM + " bytes, scratch per engine: "
+                    + (BLOCK * (Integer.BYTES + 2 * Double.BYTES)) + " bytes");
+        }
+    }
+
+    /**
+     * Actuators for many rooms, grouped by exact class. Evaluating the registry runs each group through its own
+     * kernel, so the calculatePower call inside a kernel only ever sees one receiver class and stays inlined,
+     * however many device types the rooms mix. The built-in actuators have kernels; other types share a generic
+     * loop unless a kernel is registered for them. Whether a device runs at all follows ThermostatDisplay.control():
+     * each kernel tests its device's condition on the room's occupancy and temperature and skips it when off.
+     */
+    static class DeviceRegistry {
+        /** Adds the power of every running device in a group to power[room], reading input[room]. */
+        interface GroupKernel {
+            void evaluate(Actuator[] devices, int[] rooms, int count, int[] people, double[] temp, double[] input,
+                          double desiredTemp, double[] power);
+        }
+
+        /** When a device may run, as control() decides for the device in the same role. */
+        enum Policy {
+            ALWAYS, COOLING_OCCUPIED, COOLING_CROWDED, HEATING, CROWDED;
+
+            static Policy of(Class<?> type) {
+                if (SecondaryAirConditioner.class.isAssignableFrom(type)) return COOLING_CROWDED;
+                if (AirConditioner.class.isAssignableFrom(type)) return COOLING_OCCUPIED;
+                if (Heater.class.isAssignableFrom(type)) return HEATING;
+                if (SmartFan.class.isAssignableFrom(type)) return CROWDED;
+                return ALWAYS;
+            }
+
+            // Whether a device under this policy runs in a room with these readings
+            boolean enabled(int people, double temp, double desiredTemp) {
+                boolean cooling = temp - desiredTemp > 0;
+                switch (this) {
+                    case COOLING_OCCUPIED: return cooling && people > 0;
+                    case COOLING_CROWDED: return cooling && people > 10;
+                    case HEATING: return !cooling;
+                    case CROWDED: return people >= 6;
+                    default: return true;
+                }
+            }
+        }
+
+        private static final class Group {
+            final Class<?> type;
+            final boolean readsHumidity;
+            final GroupKernel kernel;
+            Actuator[] devices = new Actuator[16];
+            int[] rooms = new int[16];
+            int count;
+
+            Group(Class<?> type, boolean readsHumidity, GroupKernel kernel) {
+                this.type = type;
+                this.readsHumidity = readsHumidity;
+                this.kernel = kernel;
+            }
+
+            void add(int room, Actuator device) {
+                if (count == devices.length) {
+                    devices = Arrays.copyOf(devices, count * 2);
+                    rooms = Arrays.copyOf(rooms, count * 2);
+                }
+                devices[count] = device;
+                rooms[count] = room;
+                count++;
+            }
+        }
+
+        private final Map<Class<?>, GroupKernel> kernels = new LinkedHashMap<>();
+        private final List<Group> groups = new ArrayList<>();
+        private final int[] people;
+        private final double[] temp;
+        private final double[] humidity;
+        private final double[] power;
+        private double desiredTemp = ControlSettings.DEFAULTS.desiredTemp;
+
+        public DeviceRegistry(int roomCount) {
+            if (roomCount <= 0) {
+                throw new IllegalArgumentException("roomCount must be positive: " + roomCount);
+            }
+            people = new int[roomCount];
+            temp = new double[roomCount];
+            humidity = new double[roomCount];
+            power = new double[roomCount];
+            kernels.put(AirConditioner.class, DeviceRegistry::evaluateAirConditioners);
+            kernels.put(SecondaryAirConditioner.class, DeviceRegistry::evaluateSecondaryAirConditioners);
+            kernels.put(Heater.class, DeviceRegistry::evaluateHeaters);
+            kernels.put(Humidifier.class, DeviceRegistry::evaluateHumidifiers);
+            kernels.put(SmartFan.class, DeviceRegistry::evaluateFans);
+        }
+
+        // Must come before the first device of that type is added
+        public void registerKernel(Class<? extends Actuator> type, GroupKernel kernel) {
+            if (groupFor(type, false) != null || groupFor(type, true) != null) {
+                throw new IllegalStateException("Devices of " + type.getName() + " are already grouped");
+            }
+            kernels.put(type, kernel);
+        }
+
+        public void add(int room, Actuator device) {
+            add(room, device, device.readsHumidity());
+        }
+
+        // For lambdas and other devices that cannot say which reading they take
+        public void add(int room, Actuator device, boolean readsHumidity) {
+            if (room < 0 || room >= power.length) {
+                throw new IllegalArgumentException("No room " + room + " in a registry of " + power.length);
+            }
+            Class<?> type = device.getClass();
+            Group group = groupFor(type, readsHumidity);
+            if (group == null) {
+                GroupKernel kernel = kernels.get(type);
+                group = new Group(type, readsHumidity, kernel != null ? kernel : anyKernel(Policy.of(type)));
+                groups.add(group);
+            }
+            group.add(room, device);
+        }
+
+        private Group groupFor(Class<?> type, boolean readsHumidity) {
+            for (Group group : groups) {
+                if (group.type == type && group.readsHumidity == readsHumidity) return group;
+            }
+            return null;
+        }
+
+        public void setReadings(int room, int people, double temp, double humidity) {
+            this.people[room] = people;
+            this.temp[room] = temp;
+            this.humidity[room] = humidity;
+        }
+
+        // Setpoint for the cooling kernels and the heating/cooling decision, as ThermostatDisplay.control() uses it
+        public void setDesiredTemp(double desiredTemp) {
+            this.desiredTemp = desiredTemp;
+        }
+
+        // Total power per room. Within a room, devices are summed group by group in order of first registration.
+        public void evaluate() {
+            Arrays.fill(power, 0.0);
+            for (Group group : groups) {
+                group.kernel.evaluate(group.devices, group.rooms, group.count, people, temp,
+                        group.readsHumidity ? humidity : temp, desiredTemp, power);
+            }
+        }
+
+        public double getPower(int room) {
+            return power[room];
+        }
+
+        public double getTotalPower() {
+            double total = 0.0;
+            for (double p : power) total += p;
+            return total;
+        }
+
+        public int getRoomCount() { return power.length; }
+        public int getGroupCount() { return groups.size(); }
+
+        // One method per type, so each call site below has a single receiver class in its profile.
+        // The on/off conditions are control()'s, tested inline so a device that is off costs no call.
+        private static void evaluateAirConditioners(Actuator[] devices, int[] rooms, int count, int[] people,
+                                                    double[] temp, double[] input, double desiredTemp, double[] power) {
+            for (int i = 0; i < count; i++) {
+                int room = rooms[i];
+                if (temp[room] - desiredTemp > 0 && people[room] > 0) {
+                    power[room] += ((AirConditioner) devices[i]).calculatePower(input[room], desiredTemp);
+                }
+            }
+        }
+
+        private static void evaluateSecondaryAirConditioners(Actuator[] devices, int[] rooms, int count, int[] people,
+                                                             double[] temp, double[] input, double desiredTemp,
+                                                             double[] power) {
+            for (int i = 0; i < count; i++) {
+                int room = rooms[i];
+                if (temp[room] - desiredTemp > 0 && people[room] > 10) {
+                    power[room] += ((SecondaryAirConditioner) devices[i]).calculatePower(input[room], desiredTemp);
+                }
+            }
+        }
+
+        private static void evaluateHeaters(Actuator[] devices, int[] rooms, int count, int[] people,
+                                            double[] temp, double[] input, double desiredTemp, double[] power) {
+            for (int i = 0; i < count; i++) {
+                int room = rooms[i];
+                if (!(temp[room] - desiredTemp > 0)) {
+                    power[room] += ((Heater) devices[i]).calculatePower(input[room]);
+                }
+            }
+        }
+
+        private static void evaluateHumidifiers(Actuator[] devices, int[] rooms, int count, int[] people,
+                                                double[] temp, double[] input, double desiredTemp, double[] power) {
+            for (int i = 0; i < count; i++) {
+                int room = rooms[i];
+                power[room] += ((Humidifier) devices[i]).calculatePower(input[room]);
+            }
+        }
+
+        private static void evaluateFans(Actuator[] devices, int[] rooms, int count, int[] people,
+                                         double[] temp, double[] input, double desiredTemp, double[] power) {
+            for (int i = 0; i < count; i++) {
+                int room = rooms[i];
+                if (people[room] >= 6) {
+                    power[room] += ((SmartFan) devices[i]).calculatePower(input[room]);
+                }
+            }
+        }
+
+        // Shared by every type without a kernel of its own, under the policy of the role it extends
+        private static GroupKernel anyKernel(Policy policy) {
+            if (policy == Policy.ALWAYS) {
+                return (devices, rooms, count, people, temp, input, desiredTemp, power) -> {
+                    for (int i = 0; i < count; i++) {
+                        int room = rooms[i];
+                        power[room] += devices[i].calculatePower(input[room], desiredTemp);
+                    }
+                };
+            }
+            return (devices, rooms, count, people, temp, input, desiredTemp, power) -> {
+                for (int i = 0; i < count; i++) {
+                    int room = rooms[i];
+                    if (policy.enabled(people[room], temp[room], desiredTemp)) {
+                        power[room] += devices[i].calculatePower(input[room], desiredTemp);
+                    }
+                }
+            };
+        }
+    }
+
+    /**
+     * Monte Carlo sweep over month profiles, setpoints and window states.
+     * Every combination is simulated by independent headless replicas on a ForkJoinPool
+     * and summarised as cost and energy distributions taken from each replica's ElectricityBill.
+     */
+    static class MonteCarloSweep {
+        static final String[] ALL_MONTHS = {
+            "January", "February", "March", "April", "May", "June",
+            "July", "August", "September", "October", "November", "December"
+        };
+
+        /**
+         * One point of the sweep grid.
+         */
+        static class Scenario {
+            final String month;
+            final double desiredTemp;
+            final boolean windowOpen;
+
+            Scenario(String month, double desiredTemp, boolean windowOpen) {
+                this.month = month;
+                this.desiredTemp = desiredTemp;
+                this.windowOpen = windowOpen;
             }
-            
-            double humidifierPower = humidifier.calculatePower(humidity);
-            double fanPower = (people >= 6) ? smartFan.calculatePower(temp) : 0.0;
-            temp += heaterPower / 600.0; // simulate heating effect
-            double totalPower = acPower + secondaryACPower + humidifierPower + fanPower + heaterPower;
-            return new SimulationResult(people, temp, humidity, acPower, secondaryACPower, humidifierPower, fanPower, heaterPower, totalPower);
         }
 
-        // Helper: display simulation output
-        protected void displayOutput(SimulationResult result) {
-            SwingUtilities.invokeLater(() -> {
-                System.out.println("People in room: " + result.people);
-                if (result.people == 0) {
-                    System.out.println("⚠️ Warning: No one is in the room. AC is off.");
-                }
-                System.out.println("Current Room Temperature: " + result.temp + " °C");
-                System.out.println("Primary AC Power Consumption: " + result.acPower + " W");
-                System.out.println("Secondary AC Power Consumption: " + result.secondaryACPower + " W");
-                System.out.println("Current Room Humidity: " + result.humidity + " %");
-                System.out.println("Humidifier Power Consumption: " + result.humidifierPower + " W");
-                System.out.println("Smart Fan Power Consumption: " + result.fanPower + " W");
-                System.out.println("Heater Power Consumption: " + result.heaterPower + " W");
-                String warning = "";
-                if (result.temp > ThermostatDashboard.desiredTempControl) {
-                    warning = "🔥 ALERT: Room is overheating!";
-                } else if (result.people == 0) {
-                    warning = "⚠️ No one is in the room. AC is off.";
-                } else if (result.totalPower > 2500) {
-                    warning = "💡 Tip: Reduce room temp by 1°C to save ~7% energy.";
-                }
-                if (totalRuntimeSeconds > 86400) {
-                    System.out.println("🛠️ Maintenance Alert: AC runtime exceeded 24 hours.");
-                }
-                bill.displayBill();
-                if (result.people > 0) {
-                    double totalKWh = result.totalPower * 3 / 3600000.0;
-                    double perPersonKWh = totalKWh / result.people;
-                    System.out.println("Energy used per person: " + Math.round(perPersonKWh * 100000.0) / 100000.0 + " kWh");
-                }
-                if (result.totalPower > 2500) {
-                    System.out.println("💡 Tip: Reduce room temp by 1°C to save ~7% energy.");
-                }
-                int time = totalRuntimeSeconds;
-                ThermostatDashboard.updateData(time, result.temp, result.humidity, result.totalPower);
-                ThermostatDashboard.updateLiveValues(
-                    result.temp, result.humidity, result.totalPower, result.people,
-                    result.acPower, result.heaterPower, result.fanPower, result.humidifierPower,
-                    bill.getTotalCost(), warning
-                );
-                System.out.println("----------------------------");
-            });
+        /**
+         * Summary statistics of one metric over the replicas of a scenario.
+         */
+        static class Distribution {
+            final double mean, p50, p95, min, max;
+
+            private Distribution(double mean, double p50, double p95, double min, double max) {
+                this.mean = mean;
+                this.p50 = p50;
+                this.p95 = p95;
+                this.min = min;
+                this.max = max;
+            }
+
+            static Distribution of(double[] samples) {
+                double[] sorted = samples.clone();
+                Arrays.sort(sorted);
+                double sum = 0.0;
+                for (double v : sorted) sum += v;
+                return new Distribution(sum / sorted.length, percentile(sorted, 0.50), percentile(sorted, 0.95),
+                        sorted[0], sorted[sorted.length - 1]);
+            }
+
+            // Nearest-rank percentile of an ascending array
+            private static double percentile(double[] sorted, double p) {
+                int rank = (int) Math.ceil(p * sorted.length);
+                return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+            }
         }
 
-        // Helper: log to file
-        protected void logToFile(SimulationResult result) {
-            try {
-                File logFile = new File("thermostat_log.txt");
-                if (!logFile.exists()) {
-                    logFile.createNewFile();
-                }
-                try (FileWriter fw = new FileWriter(logFile, true)) {
-                    fw.write("People in room: " + result.people + "\n");
-                    fw.write("Current Room Temperature: " + result.temp + " °C\n");
-                    fw.write("AC Power Consumption: " + result.acPower + " W\n");
-                    fw.write("Secondary AC Power Consumption: " + result.secondaryACPower + " W\n");
-                    fw.write("Current Room Humidity: " + result.humidity + " %\n");
-                    fw.write("Humidifier Power Consumption: " + result.humidifierPower + " W\n");
-                    fw.write("Smart Fan Power Consumption: " + result.fanPower + " W\n");
-                    fw.write("Heater Power Consumption: " + result.heaterPower + " W\n");
-                    fw.write("Total Electricity Cost: $" + bill.getTotalCost() + "\n");
-                    fw.write("----------------------------\n");
-                }
-            } catch (IOException e) {
-                e.printStackTrace();
+        static class ScenarioResult {
+            final Scenario scenario;
+            final Distribution cost;
+            final Distribution energyKWh;
+
+            ScenarioResult(Scenario scenario, Distribution cost, Distribution energyKWh) {
+                this.scenario = scenario;
+                this.cost = cost;
+                this.energyKWh = energyKWh;
             }
         }
 
-        public void startDisplay() {
-            Timer timer = new Timer();
-            timer.schedule(new TimerTask() {
-                @Override
-                public void run() {
-                    totalRuntimeSeconds += 3;
-                    SimulationResult result = calculateSimulation();
-                    bill.addConsumption(result.totalPower, 3);
-                    displayOutput(result);
-                    logToFile(result);
+        private final List<Scenario> scenarios = new ArrayList<>();
+        private final int replicas;
+        private final long simulatedSeconds;
+        private final long masterSeed;
+
+        // Replica r of scenario s uses room id s * replicas + r, so results do not depend on the pool size
+        public MonteCarloSweep(String[] months, int minDesiredTemp, int maxDesiredTemp, boolean[] windowStates,
+                               int replicas, long simulatedSeconds, long masterSeed) {
+            if (replicas <= 0) {
+                throw new IllegalArgumentException("replicas must be positive: " + replicas);
+            }
+            for (String month : months) {
+                for (int t = minDesiredTemp; t <= maxDesiredTemp; t++) {
+                    for (boolean windowOpen : windowStates) {
+                        scenarios.add(new Scenario(month, t, windowOpen));
+                    }
                 }
-            }, 0, 3000);
+            }
+            if (scenarios.isEmpty()) {
+                throw new IllegalArgumentException("Empty scenario grid: " + months.length + " months, setpoints "
+                        + minDesiredTemp + ".." + maxDesiredTemp + ", " + windowStates.length + " window states");
+            }
+            this.replicas = replicas;
+            this.simulatedSeconds = simulatedSeconds;
+            this.masterSeed = masterSeed;
         }
 
-        public void stopDisplay() {
-            // Placeholder for stopping the display logic
+        public int getRunCount() {
+            return scenarios.size() * replicas;
         }
 
-        // Helper class to bundle simulation values
-        public static class SimulationResult {
-            int people;
-            double temp, humidity, acPower, secondaryACPower, humidifierPower, fanPower, heaterPower, totalPower;
-            SimulationResult(int people, double temp, double humidity, double acPower, double secondaryACPower,
-                             double humidifierPower, double fanPower, double heaterPower, double totalPower) {
-                this.people = people;
-                this.temp = temp;
-                this.humidity = humidity;
-                this.acPower = acPower;
-                this.secondaryACPower = secondaryACPower;
-                this.humidifierPower = humidifierPower;
-                this.fanPower = fanPower;
-                this.heaterPower = heaterPower;
-                this.totalPower = totalPower;
+        public List<ScenarioResult> run(ForkJoinPool pool) {
+            double[][] costs = new double[scenarios.size()][replicas];
+            double[][] energy = new double[scenarios.size()][replicas];
+            pool.invoke(new ReplicaTask(costs, energy, 0, getRunCount()));
+
+            List<ScenarioResult> results = new ArrayList<>(scenarios.size());
+            for (int i = 0; i < scenarios.size(); i++) {
+                results.add(new ScenarioResult(scenarios.get(i), Distribution.of(costs[i]), Distribution.of(energy[i])));
+            }
+            return results;
+        }
+
+        // Runs one replica of one scenario and stores its totals
+        private void runReplica(int run, double[][] costs, double[][] energy) {
+            int scenarioIndex = run / replicas;
+            int replica = run % replicas;
+            Scenario scenario = scenarios.get(scenarioIndex);
+            double[] base = ThermostatDisplay.getBaseTempHumidity(scenario.month);
+            HeadlessSimulationEngine engine = new HeadlessSimulationEngine(run, base[0], base[1], scenario.windowOpen,
+                    HeadlessSimulationEngine.DEFAULT_TICK_SECONDS, masterSeed);
+            engine.setDesiredTemp(scenario.desiredTemp);
+            engine.runFor(simulatedSeconds);
+            costs[scenarioIndex][replica] = engine.getBill().getTotalCost();
+            energy[scenarioIndex][replica] = engine.getBill().getTotalKWh();
+        }
+
+        /**
+         * Splits the flat range of (scenario, replica) runs until single runs remain.
+         */
+        private class ReplicaTask extends RecursiveAction {
+            private static final long serialVersionUID = 1L;
+            private final double[][] costs;
+            private final double[][] energy;
+            private final int from;
+            private final int to;
+
+            ReplicaTask(double[][] costs, double[][] energy, int from, int to) {
+                this.costs = costs;
+                this.energy = energy;
+                this.from = from;
+                this.to = to;
             }
+
+            @Override
+            protected void compute() {
+                if (to - from <= 1) {
+                    if (to > from) runReplica(from, costs, energy);
+                    return;
+                }
+                int mid = (from + to) >>> 1;
+                invokeAll(new ReplicaTask(costs, energy, from, mid), new ReplicaTask(costs, energy, mid, to));
+            }
+        }
+
+        // Usage: MonteCarloSweep [days] [replicas] [month,month,...] [minTemp] [maxTemp] [seed] [threads]
+        public static void main(String[] args) {
+            long days = args.length > 0 ? Long.parseLong(args[0]) : 7;
+            int replicas = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+            String[] months = args.length > 2 ? args[2].split(",") : ALL_MONTHS;
+            int minTemp = args.length > 3 ? Integer.parseInt(args[3]) : 16;
+            int maxTemp = args.length > 4 ? Integer.parseInt(args[4]) : 30;
+            long seed = args.length > 5 ? Long.parseLong(args[5]) : SimulationSeeds.randomMasterSeed();
+            int threads = args.length > 6 ? Integer.parseInt(args[6]) : Runtime.getRuntime().availableProcessors();
+
+            MonteCarloSweep sweep = new MonteCarloSweep(months, minTemp, maxTemp, new boolean[]{false, true},
+                    replicas, days * 86400L, seed);
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            long start = System.nanoTime();
+            List<ScenarioResult> results = sweep.run(pool);
+            double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+
+            System.out.println(String.format("%-10s %5s %6s | %10s %10s %10s | %10s %10s %10s",
+                    "Month", "Temp", "Window", "cost mean", "cost p50", "cost p95", "kWh mean", "kWh p50", "kWh p95"));
+            for (ScenarioResult r : results) {
+                System.out.println(String.format("%-10s %5.0f %6s | %10.2f %10.2f %10.2f | %10.1f %10.1f %10.1f",
+                        r.scenario.month, r.scenario.desiredTemp, r.scenario.windowOpen ? "open" : "closed",
+                        r.cost.mean, r.cost.p50, r.cost.p95, r.energyKWh.mean, r.energyKWh.p50, r.energyKWh.p95));
+            }
+            System.out.println(sweep.getRunCount() + " runs of " + days + " simulated days in "
+                    + String.format("%.2f", elapsedSeconds) + " s on " + pool.getParallelism() + " worker(s), seed " + seed);
+            pool.shutdown();
         }
     }
 
 static class ThermostatDashboard extends JPanel {
-    // Add a static field to track the running display
-    public static ThermostatDisplay runningDisplay = null;
     // Value labels for live display
     private static JLabel tempValueLabel = new JLabel("Temp: -- °C");
     private static JLabel humidityValueLabel = new JLabel("Humidity: -- %");
@@ -363,7 +4118,7 @@ static class ThermostatDashboard extends JPanel {
         windowCheck = new JCheckBox("Window Open");
         windowCheck.setForeground(Color.WHITE);
         windowCheck.setBackground(Color.BLACK);
-        windowCheck.setSelected(windowOpenControl);
+        windowCheck.setSelected(ControlPlane.SHARED.current().windowOpen);
         controlsPanel.add(windowCheck);
 
         // Start button
@@ -379,7 +4134,7 @@ static class ThermostatDashboard extends JPanel {
         tempLabel.setForeground(Color.WHITE);
         controlsPanel.add(tempLabel);
 
-        JSlider tempSlider = new JSlider(16, 30, (int) desiredTempControl);
+        JSlider tempSlider = new JSlider(16, 30, (int) ControlPlane.SHARED.current().desiredTemp);
         tempSlider.setMajorTickSpacing(2);
         tempSlider.setPaintTicks(true);
         tempSlider.setPaintLabels(true);
@@ -387,8 +4142,25 @@ static class ThermostatDashboard extends JPanel {
         tempSlider.setForeground(Color.WHITE);
         controlsPanel.add(tempSlider);
 
+        // Time warp: slider position is 10 x log10(warp), so 0..40 spans 1x..10000x
+        JLabel warpLabel = new JLabel(formatWarp(simulationClock.getWarp()));
+        warpLabel.setForeground(Color.WHITE);
+        controlsPanel.add(warpLabel);
+
+        JSlider warpSlider = new JSlider(0, 40, (int) Math.round(10 * Math.log10(simulationClock.getWarp())));
+        warpSlider.setBackground(Color.BLACK);
+        controlsPanel.add(warpSlider);
+
+        JPanel clockButtons = new JPanel(new GridLayout(1, 2, 2, 2));
+        clockButtons.setBackground(Color.BLACK);
+        JToggleButton pauseButton = new JToggleButton("Pause");
+        JButton stepButton = new JButton("Step");
+        clockButtons.add(pauseButton);
+        clockButtons.add(stepButton);
+        controlsPanel.add(clockButtons);
+
         // Status labels (reduce font size for compactness)
-        JLabel tempStatus = new JLabel("Temp: " + desiredTempControl + " °C");
+        JLabel tempStatus = new JLabel("Temp: " + ControlPlane.SHARED.current().desiredTemp + " °C");
         tempStatus.setForeground(Color.WHITE);
         tempStatus.setFont(new Font("Arial", Font.PLAIN, 13)); // Smaller font
         controlsPanel.add(tempStatus);
@@ -406,9 +4178,23 @@ static class ThermostatDashboard extends JPanel {
 
         // Listeners
         tempSlider.addChangeListener(e -> {
-            desiredTempControl = tempSlider.getValue();
-            tempStatus.setText("Temp: " + desiredTempControl + " °C");
+            ControlSettings updated = ControlPlane.SHARED.setDesiredTemp(tempSlider.getValue());
+            tempStatus.setText("Temp: " + updated.desiredTemp + " °C");
         });
+        warpSlider.addChangeListener(e -> {
+            double warp = Math.pow(10, warpSlider.getValue() / 10.0);
+            simulationClock.setWarp(Math.max(SimulationClock.MIN_WARP, Math.min(SimulationClock.MAX_WARP, warp)));
+            warpLabel.setText(formatWarp(simulationClock.getWarp()));
+        });
+        pauseButton.addActionListener(e -> {
+            if (pauseButton.isSelected()) {
+                simulationClock.pause();
+            } else {
+                simulationClock.resume();
+            }
+            pauseButton.setText(pauseButton.isSelected() ? "Resume" : "Pause");
+        });
+        stepButton.addActionListener(e -> simulationClock.step(TICK_SECONDS));
 
         add(controlsPanel);
 
@@ -442,307 +4228,467 @@ static class ThermostatDashboard extends JPanel {
 
         setPreferredSize(new Dimension(220, 500)); // Slightly smaller panel
 
+        // Month and window changes go to the session; registered once, whatever the number of restarts
+        monthBox.addActionListener(e -> session.setMonth((String) monthBox.getSelectedItem()));
+        windowCheck.addActionListener(e -> session.setWindowOpen(windowCheck.isSelected()));
+
         // --- Reset Button Action ---
         resetButton.addActionListener(e -> {
-            // Stop current simulation if running
-            if (runningDisplay != null) {
-                runningDisplay.stopDisplay();
-                runningDisplay = null;
-            }
-            simulationStarted = false;
-            startButton.setEnabled(true);
-
-            // Clear graph data
-            timeData.clear();
-            tempData.clear();
-            humidityData.clear();
-            powerData.clear();
-
-            // Optionally, reset live value labels
-            tempValueLabel.setText("Temp: -- °C");
-            humidityValueLabel.setText("Humidity: -- %");
-            powerValueLabel.setText("Power: -- W");
-            peopleValueLabel.setText("People: --");
-            acPowerLabel.setText("AC Power: -- W");
-            heaterPowerLabel.setText("Heater Power: -- W");
-            fanPowerLabel.setText("Fan Power: -- W");
-            humidifierPowerLabel.setText("Humidifier Power: -- W");
-
-            // Start new simulation with current settings
-            String selectedMonth = (String) monthBox.getSelectedItem();
-            boolean windowOpen = windowCheck.isSelected();
-            double[] base = getBaseTempHumidity(selectedMonth);
-            final double[] baseTemp = {base[0]};
-            final double[] baseHumidity = {base[1]};
-            final boolean[] windowOpenHolder = {windowOpen};
-
-            // Listen for changes to monthBox and windowCheck
-            monthBox.addActionListener(ev -> {
-                String newMonth = (String) monthBox.getSelectedItem();
-                double[] newBase = getBaseTempHumidity(newMonth);
-                baseTemp[0] = newBase[0];
-                baseHumidity[0] = newBase[1];
-            });
-            windowCheck.addActionListener(ev -> {
-                windowOpenHolder[0] = windowCheck.isSelected();
-            });
-
-            new Thread(() -> runSimulationDynamic(baseTemp, baseHumidity, windowOpenHolder)).start();
+            session.setMonth((String) monthBox.getSelectedItem());
+            session.setWindowOpen(windowCheck.isSelected());
+            session.reset(); // Graph and live values are cleared between the old and the new run
             simulationStarted = true;
             startButton.setEnabled(false);
         });
     }
 
-    public static boolean windowOpenControl = false;
-    public static double desiredTempControl = 21.0;
-    public static int simulationSpeedMs = 3000;
-    private static final List<Integer> timeData = new ArrayList<>();
-    private static final List<Double> tempData = new ArrayList<>();
-    private static final List<Double> humidityData = new ArrayList<>();
-    private static final List<Double> powerData = new ArrayList<>();
+    // Shared simulated clock; the running simulation polls it, the controls adjust it
+    static final SimulationClock simulationClock = new SimulationClock();
+    private static final int TICK_SECONDS = SimulationSession.TICK_SECONDS;
+
+    // The one interactive simulation; Start, Stop and Reset only change its state
+    static final SimulationSession session = new SimulationSession(simulationClock) {
+        @Override
+        protected void onReset() {
+            history.clear();
+            liveValues.clear();
+            SwingUtilities.invokeLater(ThermostatDashboard::resetLiveValues);
+        }
+    };
+
+    private static String formatWarp(double warp) {
+        return String.format("Speed: %.0fx", warp);
+    }
+
+    // Retained graph points; 28800 points at 3 s per cycle covers one day
+    private static final int HISTORY_RETENTION = Integer.getInteger("thermostat.historyPoints", 28800);
+    private static final TimeSeriesStore history = new TimeSeriesStore(HISTORY_RETENTION);
 
     public static void updateData(int time, double temp, double humidity, double power) {
-        timeData.add(time);
-        tempData.add(temp);
-        humidityData.add(humidity);
-        powerData.add(power / 1000.0); // Store power in kW for graph
+        history.append(time, temp, humidity, power / 1000.0); // Store power in kW for graph
+    }
+
+    // Live value indexes, in label order
+    static final int LIVE_TEMP = 0, LIVE_HUMIDITY = 1, LIVE_POWER = 2, LIVE_PEOPLE = 3, LIVE_AC = 4,
+            LIVE_HEATER = 5, LIVE_FAN = 6, LIVE_HUMIDIFIER = 7, LIVE_BILL = 8, LIVE_COUNT = 9;
+    private static final JLabel[] LIVE_LABELS = {
+        tempValueLabel, humidityValueLabel, powerValueLabel, peopleValueLabel, acPowerLabel,
+        heaterPowerLabel, fanPowerLabel, humidifierPowerLabel, billLabel
+    };
+    // Multiplier giving the displayed precision of each live value (e.g. 10 for one decimal)
+    private static final double[] LIVE_PRECISION = {10, 10, 0.1, 1, 0.1, 10, 10, 10, 100};
+    private static final int LIVE_VALUES_FPS = 30;
+
+    private static final LiveValuePublisher liveValues = new LiveValuePublisher();
+    private static final long[] shownLiveKeys = new long[LIVE_COUNT];
+    static {
+        Arrays.fill(shownLiveKeys, Long.MIN_VALUE);
+    }
+    private static String shownWarning = "";
+    private static long shownSequence = -1;
+
+    static String formatLiveValue(int index, double value) {
+        return switch (index) {
+            case LIVE_TEMP -> "Temp: " + String.format("%.1f", value) + " °C";
+            case LIVE_HUMIDITY -> "Humidity: " + String.format("%.1f", value) + " %";
+            case LIVE_POWER -> "Power: " + String.format("%.2f", value / 1000.0) + " kW";
+            case LIVE_PEOPLE -> "People: " + (int) value;
+            case LIVE_AC -> "AC Power: " + String.format("%.2f", value / 1000.0) + " kW";
+            case LIVE_HEATER -> "Heater Power: " + String.format("%.1f", value) + " W";
+            case LIVE_FAN -> "Fan Power: " + String.format("%.1f", value) + " W";
+            case LIVE_HUMIDIFIER -> "Humidifier Power: " + String.format("%.1f", value) + " W";
+            case LIVE_BILL -> "Bill: $" + String.format("%.2f", value);
+            default -> throw new IllegalArgumentException("Unknown live value: " + index);
+        };
+    }
+
+    // Label texts for the live value panel: temp, humidity, power, people, AC, heater, fan, humidifier, bill
+    static String[] formatLiveValues(double temp, double humidity, double power, int people,
+                                     double acPower, double heaterPower, double fanPower, double humidifierPower,
+                                     double bill) {
+        double[] values = {temp, humidity, power, people, acPower, heaterPower, fanPower, humidifierPower, bill};
+        String[] texts = new String[LIVE_COUNT];
+        for (int i = 0; i < LIVE_COUNT; i++) {
+            texts[i] = formatLiveValue(i, values[i]);
+        }
+        return texts;
     }
 
-    // Call this from simulation to update the live values
+    // Call this from simulation to update the live values; only the newest values reach the labels
     public static void updateLiveValues(double temp, double humidity, double power, int people,
                                         double acPower, double heaterPower, double fanPower, double humidifierPower,
                                         double bill, String warning) {
-        SwingUtilities.invokeLater(() -> {
-            tempValueLabel.setText("Temp: " + String.format("%.1f", temp) + " °C");
-            humidityValueLabel.setText("Humidity: " + String.format("%.1f", humidity) + " %");
-            powerValueLabel.setText("Power: " + String.format("%.2f", power / 1000.0) + " kW");
-            peopleValueLabel.setText("People: " + people);
-            acPowerLabel.setText("AC Power: " + String.format("%.2f", acPower / 1000.0) + " kW");
-            heaterPowerLabel.setText("Heater Power: " + String.format("%.1f", heaterPower) + " W");
-            fanPowerLabel.setText("Fan Power: " + String.format("%.1f", fanPower) + " W");
-            humidifierPowerLabel.setText("Humidifier Power: " + String.format("%.1f", humidifierPower) + " W");
-            billLabel.setText("Bill: $" + String.format("%.2f", bill));
-            warningLabel.setText(warning);
-            
-            // Play beep if there's a warning and beep is enabled
-            if (!warning.isEmpty() && beepEnabled) {
-                playBeep();
+        liveValues.publish(new double[]{temp, humidity, power, people, acPower, heaterPower, fanPower,
+                humidifierPower, bill}, warning);
+    }
+
+    // Runs on the EDT from the frame timer: apply the newest snapshot, touching only labels whose text changes
+    static void refreshLiveValues() {
+        LiveValuePublisher.Snapshot snapshot = liveValues.latest();
+        if (snapshot == null || snapshot.sequence == shownSequence) return;
+        shownSequence = snapshot.sequence;
+        liveValues.markConsumed();
+        for (int i = 0; i < LIVE_COUNT; i++) {
+            long key = Math.round(snapshot.values[i] * LIVE_PRECISION[i]);
+            if (key != shownLiveKeys[i]) {
+                shownLiveKeys[i] = key;
+                LIVE_LABELS[i].setText(formatLiveValue(i, snapshot.values[i]));
             }
-        });
+        }
+        if (!snapshot.warning.equals(shownWarning)) {
+            shownWarning = snapshot.warning;
+            warningLabel.setText(snapshot.warning);
+        }
+
+        // Play beep if there's a warning and beep is enabled
+        if (!snapshot.warning.isEmpty() && beepEnabled) {
+            playBeep();
+        }
     }
 
-    // Helper to get base temp/humidity for a month
-    private static double[] getBaseTempHumidity(String month) {
-        return switch (month.toLowerCase()) {
-            case "january" -> new double[]{14, 65};
-            case "february" -> new double[]{17, 60};
-            case "march" -> new double[]{22, 50};
-            case "april" -> new double[]{28, 35};
-            case "may" -> new double[]{33, 38};
-            case "june" -> new double[]{34, 58};
-            case "july" -> new double[]{31, 75};
-            case "august" -> new double[]{30, 80};
-            case "september" -> new double[]{29, 75};
-            case "october" -> new double[]{26, 60};
-            case "november" -> new double[]{20, 55};
-            case "december" -> new double[]{15, 65};
-            default -> new double[]{22, 50};
-        };
+    // Back to the placeholder texts; the next snapshot repaints every label
+    static void resetLiveValues() {
+        liveValues.clear();
+        shownSequence = -1;
+        Arrays.fill(shownLiveKeys, Long.MIN_VALUE);
+        shownWarning = "";
+        tempValueLabel.setText("Temp: -- °C");
+        humidityValueLabel.setText("Humidity: -- %");
+        powerValueLabel.setText("Power: -- W");
+        peopleValueLabel.setText("People: --");
+        acPowerLabel.setText("AC Power: -- W");
+        heaterPowerLabel.setText("Heater Power: -- W");
+        fanPowerLabel.setText("Fan Power: -- W");
+        humidifierPowerLabel.setText("Humidifier Power: -- W");
+        warningLabel.setText("");
     }
 
-    public static void launchDashboard() {
-        SwingUtilities.invokeLater(() -> {
-            JFrame frame = new JFrame("Thermostat Dashboard");
-            frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
-            frame.setSize(900, 600);
-            frame.setLayout(new BorderLayout());
+    /**
+     * Fixed-size, virtualized timeline of temperature, humidity and power history.
+     * The panel shows a time window set by a logical scroll position (the attached scroll bar) and a
+     * zoom level in seconds per pixel (mouse wheel); only the samples inside that window are read and drawn.
+     * While following the latest data the window advances by half a page at a time, and in between the
+     * plot is kept in an offscreen image to which only newly appended segments are added.
+     */
+    static class GraphPanel extends JPanel {
+        private static final long serialVersionUID = 1L;
+        private static final int LEFT_MARGIN = 60;
+        private static final int RIGHT_MARGIN = 20;
+        private static final int TOP_MARGIN = 20;
+        private static final int BOTTOM_MARGIN = 60;
+        private static final double MAX_Y = 100.0;  // Fixed scale for better readability
+        private static final double DEFAULT_SECONDS_PER_PIXEL = 0.2; // 15 pixels per 3 s cycle
+        private static final double MIN_SECONDS_PER_PIXEL = 0.01;
+        private static final double MAX_SECONDS_PER_PIXEL = 3600.0;
+        private static final double ZOOM_STEP = 1.25;
+        private static final Color GRID_COLOR = new Color(30, 30, 30);
+        private static final Color LEGEND_BACKGROUND = new Color(0, 0, 0, 200);
+        private static final BasicStroke AXIS_STROKE = new BasicStroke(2);
+        private static final BasicStroke LINE_STROKE = new BasicStroke(2.0f);
+        private static final Color[] SERIES_COLORS = {Color.RED, Color.BLUE, Color.GREEN};
+        private static final String[] SERIES_LABELS = {"Temperature (°C)", "Humidity (%)", "Power (kW)"};
 
-            ThermostatDashboard dashboardPanel = new ThermostatDashboard();
-            dashboardPanel.setPreferredSize(new Dimension(250, 600));
+        private final TimeSeriesStore.View view = new TimeSeriesStore.View();
+        private final SeriesDecimator decimator = new SeriesDecimator();
+        private final TimeSeriesStore store;
+        private final JScrollBar scrollBar = new JScrollBar(JScrollBar.HORIZONTAL);
 
-            JPanel graphPanel = new JPanel() {
-                private static final int INITIAL_WIDTH = 800;
-                private static final int POINTS_BEFORE_EXPAND = 50;
-                private int currentWidth = INITIAL_WIDTH;
-
-                {
-                    setBackground(Color.BLACK);
-                }
-
-                @Override
-                public Dimension getPreferredSize() {
-                    return new Dimension(currentWidth, 500);
-                }
-
-                protected void paintComponent(Graphics g) {
-                    super.paintComponent(g);
-                    Graphics2D g2 = (Graphics2D) g;
-                    g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-
-                    int width = getWidth();
-                    int height = getHeight();
-                    int leftMargin = 60;
-                    int rightMargin = 20;
-                    int topMargin = 20;
-                    int bottomMargin = 60;
-                    int graphWidth = width - leftMargin - rightMargin;
-                    int graphHeight = height - bottomMargin - topMargin;
-
-                    // Check if we need to expand
-                    if (!timeData.isEmpty() && timeData.size() > POINTS_BEFORE_EXPAND) {
-                        int neededWidth = leftMargin + rightMargin + timeData.size() * 15; // 15 pixels per data point
-                        if (neededWidth > currentWidth) {
-                            currentWidth = neededWidth;
-                            setPreferredSize(new Dimension(currentWidth, 500));
-                            revalidate();
-                        }
-                    }
+        // Visible window: [windowStart, windowStart + secondsPerPixel * plot width]
+        private double secondsPerPixel = DEFAULT_SECONDS_PER_PIXEL;
+        private long windowStart = 0;
+        private boolean following = true;
+        private boolean updatingScrollBar = false;
 
-                    // Background
-                    g2.setColor(Color.BLACK);
-                    g2.fillRect(0, 0, width, height);
+        // Cached plot and what it already contains
+        private transient BufferedImage plotCache;
+        private long plottedWindowStart = -1;
+        private double plottedSecondsPerPixel = -1;
+        private long plottedAppends = -1;
+        private long plottedClears = -1;
+        private boolean hasLastPoint = false;
+        private long lastTime;
+        private final double[] lastValues = new double[TimeSeriesStore.SERIES_COUNT];
 
-                    // Grid
-                    g2.setColor(new Color(30, 30, 30));
-                    for (int i = 0; i <= 10; i++) {
-                        int y = topMargin + (i * graphHeight / 10);
-                        g2.drawLine(leftMargin, y, width - rightMargin, y);
-                    }
-                    for (int i = 0; i <= width/50; i++) {
-                        int x = leftMargin + (i * 50);
-                        g2.drawLine(x, topMargin, x, height - bottomMargin);
-                    }
+        GraphPanel(TimeSeriesStore store) {
+            this.store = store;
+            setBackground(Color.BLACK);
+            setPreferredSize(new Dimension(800, 500));
+            scrollBar.addAdjustmentListener(e -> {
+                if (updatingScrollBar) return;
+                windowStart = e.getValue();
+                following = e.getValue() + scrollBar.getVisibleAmount() >= scrollBar.getMaximum();
+                repaint();
+            });
+            addMouseWheelListener(e -> zoom(e.getPreciseWheelRotation() > 0 ? ZOOM_STEP : 1 / ZOOM_STEP));
+        }
 
-                    // Axes
-                    g2.setColor(Color.WHITE);
-                    g2.setStroke(new BasicStroke(2));
-                    g2.drawLine(leftMargin, height - bottomMargin, width - rightMargin, height - bottomMargin);
-                    g2.drawLine(leftMargin, height - bottomMargin, leftMargin, topMargin);
+        JScrollBar getScrollBar() {
+            return scrollBar;
+        }
 
-                    // Axis labels
-                    g2.drawString("Time (s)", width / 2, height - 20);
-                    g2.drawString("Values (°C, %, kW)", 10, height / 2);
+        private int graphWidth() {
+            return Math.max(1, getWidth() - LEFT_MARGIN - RIGHT_MARGIN);
+        }
 
-                    // Find max Y value
-                    double maxY = 100.0;  // Fixed scale for better readability
+        private long windowSpan() {
+            return Math.max(1, (long) Math.ceil(secondsPerPixel * graphWidth()));
+        }
 
-                    // Draw data
-                    if (!timeData.isEmpty()) {
-                        drawDataLine(g2, timeData, tempData, Color.RED, maxY, graphWidth, graphHeight, leftMargin, topMargin);
-                        drawDataLine(g2, timeData, humidityData, Color.BLUE, maxY, graphWidth, graphHeight, leftMargin, topMargin);
-                        drawDataLine(g2, timeData, powerData, Color.GREEN, maxY, graphWidth, graphHeight, leftMargin, topMargin);
-                    }
+        // Zoom around the centre of the window, or keep the latest data in view while following
+        void zoom(double factor) {
+            long center = windowStart + windowSpan() / 2;
+            secondsPerPixel = Math.max(MIN_SECONDS_PER_PIXEL, Math.min(MAX_SECONDS_PER_PIXEL, secondsPerPixel * factor));
+            windowStart = Math.max(0, center - windowSpan() / 2);
+            followLatest();
+            repaint();
+        }
 
-                    // Legend
-                    drawLegend(g2);
-                }
+        // Called once per frame before repaint: page the window forward while following and sync the scroll bar
+        void followLatest() {
+            long span = windowSpan();
+            long latest = store.latestTime();
+            if (following && (latest > windowStart + span || latest < windowStart)) {
+                windowStart = Math.max(0, latest - span / 2);
+            }
+            long first = store.firstTime();
+            long max = Math.max(latest, windowStart + span);
+            updatingScrollBar = true;
+            try {
+                scrollBar.setValues((int) windowStart, (int) span, (int) Math.min(first, windowStart), (int) max);
+                scrollBar.setUnitIncrement((int) Math.max(1, span / 20));
+                scrollBar.setBlockIncrement((int) Math.max(1, span / 2));
+            } finally {
+                updatingScrollBar = false;
+            }
+        }
 
-                private void drawLegend(Graphics2D g2) {
-                    int x = 80;
-                    int y = 30;
-                    // Semi-transparent background
-                    g2.setColor(new Color(0, 0, 0, 200));
-                    g2.fillRect(x - 10, y - 20, 200, 80);
+        @Override
+        protected void paintComponent(Graphics g) {
+            int width = getWidth();
+            int height = getHeight();
+            if (width <= 0 || height <= 0) return;
 
-                    // Legend items
-                    drawLegendItem(g2, x, y, Color.RED, "Temperature (°C)", 
-                        tempData.isEmpty() ? 0 : tempData.get(tempData.size()-1));
-                    drawLegendItem(g2, x, y + 20, Color.BLUE, "Humidity (%)", 
-                        humidityData.isEmpty() ? 0 : humidityData.get(humidityData.size()-1));
-                    drawLegendItem(g2, x, y + 40, Color.GREEN, "Power (kW)", 
-                        powerData.isEmpty() ? 0 : powerData.get(powerData.size()-1));
-                }
+            boolean fullRedraw = plotCache == null || plotCache.getWidth() != width || plotCache.getHeight() != height
+                    || windowStart != plottedWindowStart || secondsPerPixel != plottedSecondsPerPixel;
+            if (!fullRedraw) {
+                store.readSince(plottedAppends, view);
+                fullRedraw = view.clears != plottedClears;
+            }
+            if (fullRedraw) {
+                redrawPlot(width, height);
+            } else {
+                appendSegments(width, height);
+            }
+
+            Graphics2D g2 = (Graphics2D) g;
+            g2.drawImage(plotCache, 0, 0, null);
+            g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            drawLegend(g2);
+        }
+
+        // Full redraw of background, grid, axes and the decimated samples inside the window
+        private void redrawPlot(int width, int height) {
+            if (plotCache == null || plotCache.getWidth() != width || plotCache.getHeight() != height) {
+                plotCache = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            }
+            int graphWidth = width - LEFT_MARGIN - RIGHT_MARGIN;
+            int graphHeight = height - BOTTOM_MARGIN - TOP_MARGIN;
+            long windowEnd = windowStart + windowSpan();
+            store.readRange(windowStart, windowEnd, view);
+
+            Graphics2D g2 = plotCache.createGraphics();
+            try {
+                g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
 
-                private void drawLegendItem(Graphics2D g2, int x, int y, Color color, String label, double value) {
-                    g2.setColor(color);
-                    g2.fillRect(x, y, 10, 10);
-                    g2.setColor(Color.WHITE);
-                    g2.drawString(String.format("%s: %.1f", label, value), x + 15, y + 10);
+                // Background
+                g2.setColor(Color.BLACK);
+                g2.fillRect(0, 0, width, height);
+
+                // Grid
+                g2.setColor(GRID_COLOR);
+                for (int i = 0; i <= 10; i++) {
+                    int y = TOP_MARGIN + (i * graphHeight / 10);
+                    g2.drawLine(LEFT_MARGIN, y, width - RIGHT_MARGIN, y);
+                }
+                for (int i = 0; i <= width/50; i++) {
+                    int x = LEFT_MARGIN + (i * 50);
+                    g2.drawLine(x, TOP_MARGIN, x, height - BOTTOM_MARGIN);
                 }
 
-                private void drawDataLine(Graphics2D g2, List<Integer> timeData, List<Double> data, 
-                                       Color color, double maxY, int graphWidth, int graphHeight, 
-                                       int leftMargin, int topMargin) {
-                    if (data.size() < 2) return;
+                // Axes
+                g2.setColor(Color.WHITE);
+                g2.setStroke(AXIS_STROKE);
+                g2.drawLine(LEFT_MARGIN, height - BOTTOM_MARGIN, width - RIGHT_MARGIN, height - BOTTOM_MARGIN);
+                g2.drawLine(LEFT_MARGIN, height - BOTTOM_MARGIN, LEFT_MARGIN, TOP_MARGIN);
 
-                    g2.setColor(color);
-                    g2.setStroke(new BasicStroke(2.0f));
+                // Axis labels
+                g2.drawString("Time (s)", width / 2, height - 20);
+                g2.drawString(Long.toString(windowStart), LEFT_MARGIN, height - BOTTOM_MARGIN + 15);
+                String endLabel = Long.toString(windowEnd);
+                g2.drawString(endLabel, width - RIGHT_MARGIN - g2.getFontMetrics().stringWidth(endLabel),
+                        height - BOTTOM_MARGIN + 15);
+                g2.drawString("Values (°C, %, kW)", 10, height / 2);
 
-                    int maxTime = timeData.get(timeData.size() - 1);
-                    maxTime = Math.max(maxTime, 100);  // Minimum view width
+                // Decimate to the plot width so repaint cost does not grow with history length
+                g2.clipRect(LEFT_MARGIN, 0, graphWidth, height);
+                for (int series = 0; series < TimeSeriesStore.SERIES_COUNT; series++) {
+                    drawDataLine(g2, view, series, SERIES_COLORS[series], MAX_Y, windowStart, windowEnd,
+                            graphWidth, graphHeight, LEFT_MARGIN, TOP_MARGIN);
+                }
+            } finally {
+                g2.dispose();
+            }
+            rememberLastPoint();
+            plottedClears = view.clears;
+            plottedWindowStart = windowStart;
+            plottedSecondsPerPixel = secondsPerPixel;
+        }
 
-                    for (int i = 1; i < data.size(); i++) {
-                        double x1 = leftMargin + ((double)timeData.get(i-1) / maxTime * graphWidth);
-                        double x2 = leftMargin + ((double)timeData.get(i) / maxTime * graphWidth);
-                        double y1 = topMargin + graphHeight - (data.get(i-1) / maxY * graphHeight);
-                        double y2 = topMargin + graphHeight - (data.get(i) / maxY * graphHeight);
-                        
-                        g2.drawLine((int)x1, (int)y1, (int)x2, (int)y2);
+        // Draw only the samples appended since the last frame, continuing from the last plotted point
+        private void appendSegments(int width, int height) {
+            if (view.size() == 0) return;
+            int graphWidth = width - LEFT_MARGIN - RIGHT_MARGIN;
+            int graphHeight = height - BOTTOM_MARGIN - TOP_MARGIN;
+            Graphics2D g2 = plotCache.createGraphics();
+            try {
+                g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+                g2.setStroke(LINE_STROKE);
+                g2.clipRect(LEFT_MARGIN, 0, graphWidth, height);
+                for (int series = 0; series < TimeSeriesStore.SERIES_COUNT; series++) {
+                    g2.setColor(SERIES_COLORS[series]);
+                    long prevTime = lastTime;
+                    double prevValue = lastValues[series];
+                    boolean hasPrev = hasLastPoint;
+                    for (int i = 0; i < view.size(); i++) {
+                        long time = view.timeAt(i);
+                        double value = view.valueAt(series, i);
+                        if (hasPrev) {
+                            g2.drawLine(xFor(prevTime, graphWidth), yFor(prevValue, graphHeight),
+                                    xFor(time, graphWidth), yFor(value, graphHeight));
+                        }
+                        prevTime = time;
+                        prevValue = value;
+                        hasPrev = true;
                     }
                 }
-            };
+            } finally {
+                g2.dispose();
+            }
+            rememberLastPoint();
+        }
 
-            // Wrap in scroll pane
-            JScrollPane scrollPane = new JScrollPane(graphPanel);
-            scrollPane.setHorizontalScrollBarPolicy(JScrollPane.HORIZONTAL_SCROLLBAR_ALWAYS);
-            scrollPane.getHorizontalScrollBar().setUnitIncrement(16);
-            scrollPane.setBackground(Color.BLACK);
-            scrollPane.getViewport().setBackground(Color.BLACK);
-
-            // Auto-scroll timer
-            javax.swing.Timer scrollTimer = new javax.swing.Timer(1000, e -> {
-                JScrollBar scrollBar = scrollPane.getHorizontalScrollBar();
-                scrollBar.setValue(scrollBar.getMaximum());
-            });
-            scrollTimer.start();
+        private void rememberLastPoint() {
+            plottedAppends = view.appended;
+            if (view.size() == 0) {
+                hasLastPoint = false; // After a reset or an empty window there is no point to continue from
+                return;
+            }
+            int last = view.size() - 1;
+            lastTime = view.timeAt(last);
+            for (int series = 0; series < TimeSeriesStore.SERIES_COUNT; series++) {
+                lastValues[series] = view.valueAt(series, last);
+            }
+            hasLastPoint = true;
+        }
+
+        private int xFor(long time, int graphWidth) {
+            return (int) (LEFT_MARGIN + (time - windowStart) / secondsPerPixel);
+        }
+
+        private int yFor(double value, int graphHeight) {
+            return (int) (TOP_MARGIN + graphHeight - (value / MAX_Y * graphHeight));
+        }
+
+        private void drawLegend(Graphics2D g2) {
+            int x = 80;
+            int y = 30;
+            // Semi-transparent background
+            g2.setColor(LEGEND_BACKGROUND);
+            g2.fillRect(x - 10, y - 20, 200, 80);
+
+            // Legend items
+            for (int series = 0; series < TimeSeriesStore.SERIES_COUNT; series++) {
+                drawLegendItem(g2, x, y + 20 * series, SERIES_COLORS[series], SERIES_LABELS[series],
+                        store.latest(series));
+            }
+        }
+
+        private void drawLegendItem(Graphics2D g2, int x, int y, Color color, String label, double value) {
+            g2.setColor(color);
+            g2.fillRect(x, y, 10, 10);
+            g2.setColor(Color.WHITE);
+            g2.drawString(String.format("%s: %.1f", label, value), x + 15, y + 10);
+        }
+
+        void drawDataLine(Graphics2D g2, TimeSeriesStore.View data, int series, 
+                               Color color, double maxY, long minTime, long maxTime, int graphWidth, int graphHeight, 
+                               int leftMargin, int topMargin) {
+            if (data.size() < 2) return;
+
+            g2.setColor(color);
+            g2.setStroke(LINE_STROKE);
+
+            double span = Math.max(1, maxTime - minTime);
+            SeriesDecimator.Result points = decimator.decimate(data, series, minTime, maxTime, graphWidth);
+            for (int i = 1; i < points.size(); i++) {
+                double x1 = leftMargin + ((points.timeAt(i-1) - minTime) / span * graphWidth);
+                double x2 = leftMargin + ((points.timeAt(i) - minTime) / span * graphWidth);
+                double y1 = topMargin + graphHeight - (points.valueAt(i-1) / maxY * graphHeight);
+                double y2 = topMargin + graphHeight - (points.valueAt(i) / maxY * graphHeight);
+                
+                g2.drawLine((int)x1, (int)y1, (int)x2, (int)y2);
+            }
+        }
+    }
+
+    public static void launchDashboard() {
+        SwingUtilities.invokeLater(() -> {
+            JFrame frame = new JFrame("Thermostat Dashboard");
+            frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+            frame.setSize(900, 600);
+            frame.setLayout(new BorderLayout());
+
+            ThermostatDashboard dashboardPanel = new ThermostatDashboard();
+            dashboardPanel.setPreferredSize(new Dimension(250, 600));
 
-            // Repaint timer
-            javax.swing.Timer repaintTimer = new javax.swing.Timer(1000, e -> graphPanel.repaint());
+            GraphPanel graphPanel = new GraphPanel(history);
+
+            // Fixed-size viewport with its own timeline scroll bar
+            JPanel graphContainer = new JPanel(new BorderLayout());
+            graphContainer.setBackground(Color.BLACK);
+            graphContainer.add(graphPanel, BorderLayout.CENTER);
+            graphContainer.add(graphPanel.getScrollBar(), BorderLayout.SOUTH);
+
+            // Repaint timer; also pages the window forward while following the latest data
+            javax.swing.Timer repaintTimer = new javax.swing.Timer(1000, e -> {
+                graphPanel.followLatest();
+                graphPanel.repaint();
+            });
             repaintTimer.start();
 
+            // Live value timer: pulls the latest snapshot at a capped frame rate
+            javax.swing.Timer liveValueTimer = new javax.swing.Timer(1000 / LIVE_VALUES_FPS, e -> refreshLiveValues());
+            liveValueTimer.start();
+
             frame.add(dashboardPanel, BorderLayout.EAST);
-            frame.add(scrollPane, BorderLayout.CENTER);
+            frame.add(graphContainer, BorderLayout.CENTER);
 
             // --- Start Simulation Button Action ---
             dashboardPanel.startButton.addActionListener(e -> {
                 if (dashboardPanel.simulationStarted) return; // Prevent multiple starts
                 dashboardPanel.simulationStarted = true;
 
-                String selectedMonth = (String) dashboardPanel.monthBox.getSelectedItem();
-                boolean windowOpen = dashboardPanel.windowCheck.isSelected();
-                double[] base = getBaseTempHumidity(selectedMonth);
-
                 // Do NOT disable controls, so user can change them later
-                // dashboardPanel.monthBox.setEnabled(false);
-                // dashboardPanel.windowCheck.setEnabled(false);
                 dashboardPanel.startButton.setEnabled(false);
-
-                // Use a holder for baseTemp/baseHumidity and windowOpen, so they can be updated
-                final double[] baseTemp = {base[0]};
-                final double[] baseHumidity = {base[1]};
-                final boolean[] windowOpenHolder = {windowOpen};
-
-                // Listen for changes to monthBox and windowCheck
-                dashboardPanel.monthBox.addActionListener(ev -> {
-                    String newMonth = (String) dashboardPanel.monthBox.getSelectedItem();
-                    double[] newBase = getBaseTempHumidity(newMonth);
-                    baseTemp[0] = newBase[0];
-                    baseHumidity[0] = newBase[1];
-                });
-                dashboardPanel.windowCheck.addActionListener(ev -> {
-                    windowOpenHolder[0] = dashboardPanel.windowCheck.isSelected();
-                });
-
-                new Thread(() -> runSimulationDynamic(baseTemp, baseHumidity, windowOpenHolder)).start();
+                session.setMonth((String) dashboardPanel.monthBox.getSelectedItem());
+                session.setWindowOpen(dashboardPanel.windowCheck.isSelected());
+                session.start();
             });
 
             ThermostatDashboard.stopButton.addActionListener(e -> {
-                if (runningDisplay != null) {
-                    runningDisplay.stopDisplay();
-                    runningDisplay = null;
-                    dashboardPanel.simulationStarted = false;
-                    dashboardPanel.startButton.setEnabled(true); // Allow restarting
-                }
+                session.stop();
+                dashboardPanel.simulationStarted = false;
+                dashboardPanel.startButton.setEnabled(true); // Allow restarting
             });
 
             frame.setVisible(true);
@@ -768,62 +4714,308 @@ static class ThermostatDashboard extends JPanel {
         display.startDisplay();
     }
 
-    // Add this new simulation runner
-    private static void runSimulationDynamic(double[] baseTemp, double[] baseHumidity, boolean[] windowOpenHolder) {
-        TemperatureSensor sensor = new TemperatureSensor(baseTemp[0]);
-        HumidityCalculator humidityCalculator = new HumidityCalculator(baseHumidity[0]);
-        AirConditioner ac = new AirConditioner();
-        AirConditioner secondaryAC = new SecondaryAirConditioner();
-        Humidifier humidifier = new Humidifier();
-        SmartFan smartFan = new SmartFan();
-        Heater heater = new Heater();
-        ElectricityBill bill = new ElectricityBill();
+    // Add beep method
+    private static void playBeep() {
+        if (!beepEnabled) return;
+        Toolkit.getDefaultToolkit().beep();
+    }
+}
+
+    // Grouped: Benchmark classes
+    /**
+     * Microbenchmarks for the tick path, billing, label formatting and graph rendering.
+     * Each benchmark reports time per operation and bytes allocated per operation, measured per thread
+     * (the figure JMH's GC profiler reports as gc.alloc.rate.norm), so a regression in either is visible.
+     */
+    static class TickBenchmarks {
+        private static final int WARMUP_ITERATIONS = 5;
+        private static final int MEASURE_ITERATIONS = 5;
+        private static final long ITERATION_NANOS = 200_000_000L;
+        private static final int BATCH = 64;
+        private static final double[] INPUTS = new double[64];
+        static {
+            for (int i = 0; i < INPUTS.length; i++) {
+                INPUTS[i] = 10.0 + i * 0.5; // 10 °C to 41.5 °C, also used as humidity
+            }
+        }
+        private static volatile double sink;
+        private static int inputIndex = 0;
+
+        /**
+         * One benchmarked operation; the returned value is consumed so the JIT cannot drop the work.
+         */
+        interface Operation {
+            double run();
+        }
 
-        ThermostatDisplay display = new ThermostatDisplay(sensor, ac, secondaryAC, humidityCalculator, humidifier, smartFan, heater, bill, windowOpenHolder[0]) {
-            private Timer timer;
-            private int lastSpeed = ThermostatDashboard.simulationSpeedMs;
-            private boolean windowOpen = windowOpenHolder[0]; // Initialize windowOpen as a field
+        static class Result {
+            final String name;
+            final double nsPerOp;
+            final double bytesPerOp;
+            final double allocMBPerSecond;
 
-            @Override
-            public void startDisplay() {
-                timer = new Timer();
-                ThermostatDashboard.runningDisplay = this; // <-- Add this line
-                timer.schedule(new TimerTask() {
-                    @Override
-                    public void run() {
-                        // If simulation speed changed, restart timer with new speed
-                        if (lastSpeed != ThermostatDashboard.simulationSpeedMs) {
-                            timer.cancel();
-                            runSimulationDynamic(baseTemp, baseHumidity, windowOpenHolder);
-                            return;
-                        }
-                        addToTotalRuntimeSeconds(ThermostatDashboard.simulationSpeedMs / 1000);
-                        sensor.setTemperature(baseTemp[0]);
-                        humidityCalculator.setHumidity(baseHumidity[0]);
-                        windowOpen = windowOpenHolder[0];
-                        addToTotalRuntimeSeconds(ThermostatDashboard.simulationSpeedMs / 1000);
-                        SimulationResult result = calculateSimulation();
-                        bill.addConsumption(result.totalPower, ThermostatDashboard.simulationSpeedMs / 1000);
-                        displayOutput(result);
-                        logToFile(result);
-                    }
-                }, 0, ThermostatDashboard.simulationSpeedMs);
+            Result(String name, double nsPerOp, double bytesPerOp, double allocMBPerSecond) {
+                this.name = name;
+                this.nsPerOp = nsPerOp;
+                this.bytesPerOp = bytesPerOp;
+                this.allocMBPerSecond = allocMBPerSecond;
             }
 
             @Override
-            public void stopDisplay() {
-                if (timer != null) timer.cancel();
+            public String toString() {
+                return String.format("%-56s %14.1f ns/op %14.1f B/op %10.1f MB/s", name, nsPerOp, bytesPerOp, allocMBPerSecond);
             }
-        };
-        display.startDisplay();
-    }
+        }
 
-    // Add beep method
-    private static void playBeep() {
-        if (!beepEnabled) return;
-        Toolkit.getDefaultToolkit().beep();
+        private static double nextInput() {
+            inputIndex = (inputIndex + 1) & (INPUTS.length - 1);
+            return INPUTS[inputIndex];
+        }
+
+        private static long allocatedBytes() {
+            return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                    .getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+
+        // Runs batches of the operation until the iteration time is used up; returns operations executed
+        private static long iteration(Operation op) {
+            long ops = 0;
+            double acc = 0.0;
+            long deadline = System.nanoTime() + ITERATION_NANOS;
+            while (System.nanoTime() < deadline) {
+                for (int i = 0; i < BATCH; i++) {
+                    acc += op.run();
+                }
+                ops += BATCH;
+            }
+            sink = acc;
+            return ops;
+        }
+
+        static Result measure(String name, Operation op) {
+            for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+                iteration(op);
+            }
+            long ops = 0;
+            long bytesBefore = allocatedBytes();
+            long start = System.nanoTime();
+            for (int i = 0; i < MEASURE_ITERATIONS; i++) {
+                ops += iteration(op);
+            }
+            long elapsed = System.nanoTime() - start;
+            long bytes = allocatedBytes() - bytesBefore;
+            return new Result(name, (double) elapsed / ops, (double) bytes / ops, bytes / (elapsed / 1e9) / (1024 * 1024));
+        }
+
+        static ThermostatDisplay newDisplay() {
+            double[] base = ThermostatDisplay.getBaseTempHumidity("July");
+            return new ThermostatDisplay(new TemperatureSensor(base[0]), new AirConditioner(), new SecondaryAirConditioner(),
+                    new HumidityCalculator(base[1]), new Humidifier(), new SmartFan(), new Heater(),
+                    new ElectricityBill(), false);
+        }
+
+        static TimeSeriesStore newHistory(int points) {
+            TimeSeriesStore store = new TimeSeriesStore(points);
+            for (int i = 0; i < points; i++) {
+                store.append(3L * (i + 1), 20 + 10 * Math.sin(i / 500.0), 50 + 20 * Math.cos(i / 700.0), (i % 37) / 10.0);
+            }
+            return store;
+        }
+
+        static List<Result> runAll(String filter) {
+            List<Result> results = new ArrayList<>();
+            ThermostatDisplay display = newDisplay();
+            AirConditioner ac = new AirConditioner();
+            AirConditioner secondaryAC = new SecondaryAirConditioner();
+            Heater heater = new Heater();
+            Humidifier humidifier = new Humidifier();
+            SmartFan fan = new SmartFan();
+            ElectricityBill bill = new ElectricityBill();
+
+            List<String> names = new ArrayList<>();
+            List<Operation> ops = new ArrayList<>();
+            // Sensors restart from the month baseline every cycle, as in the engines; otherwise the reading
+            // drifts without bound and only the heater branch is measured
+            double[] base = ThermostatDisplay.getBaseTempHumidity("July");
+            names.add("ThermostatDisplay.calculateSimulation");
+            ops.add(() -> {
+                display.resetSensors(base[0], base[1]);
+                return display.calculateSimulation().totalPower;
+            });
+            names.add("ThermostatDisplay.tick");
+            ops.add(() -> {
+                display.resetSensors(base[0], base[1]);
+                return display.tick(3).totalPower;
+            });
+            ThermostatDisplay.SimulationResult slot = new ThermostatDisplay.SimulationResult();
+            names.add("ThermostatDisplay.tick[reused result]");
+            ops.add(() -> {
+                display.resetSensors(base[0], base[1]);
+                return display.tick(3, slot).totalPower;
+            });
+            HeadlessSimulationEngine engine = new HeadlessSimulationEngine(0, base[0], base[1], false,
+                    HeadlessSimulationEngine.DEFAULT_TICK_SECONDS, 42L);
+            TimeSeriesStore engineHistory = new TimeSeriesStore(1024);
+            engine.setTickListener(engineHistory);
+            names.add("HeadlessSimulationEngine.step[with history]");
+            ops.add(() -> engine.step().totalPower);
+            names.add("AirConditioner.calculatePower");
+            ops.add(() -> ac.calculatePower(nextInput()));
+            names.add("SecondaryAirConditioner.calculatePower");
+            ops.add(() -> secondaryAC.calculatePower(nextInput()));
+            names.add("Heater.calculatePower");
+            ops.add(() -> heater.calculatePower(nextInput()));
+            names.add("Humidifier.calculatePower");
+            ops.add(() -> humidifier.calculatePower(nextInput()));
+            names.add("SmartFan.calculatePower");
+            ops.add(() -> fan.calculatePower(nextInput()));
+            addActuatorBenchmarks(names, ops);
+            names.add("ElectricityBill.addConsumption");
+            ops.add(() -> {
+                bill.addConsumption(nextInput() * 40, 3);
+                return 0.0;
+            });
+            names.add("ElectricityBill.getTotalCost");
+            ops.add(bill::getTotalCost);
+            names.add("ThermostatDashboard.formatLiveValues");
+            ops.add(() -> ThermostatDashboard.formatLiveValues(nextInput(), 55.5, 1830.0, 7, 950.0, 0.0, 60.0, 120.0,
+                    12.34).length);
+
+            for (int points : new int[]{1_000, 100_000, 1_000_000}) {
+                String redraw = "GraphPanel.drawDataLine[" + points + " points]";
+                String frame = "GraphPanel.paintComponent[" + points + " points, +1 per frame]";
+                // Building the histories is slow, so skip sizes none of whose rows are selected
+                if (!matches(redraw, filter) && !matches(frame, filter)) continue;
+                BufferedImage image = new BufferedImage(800, 500, BufferedImage.TYPE_INT_ARGB);
+                Graphics2D g2 = image.createGraphics();
+                g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+                ThermostatDashboard.GraphPanel panel = new ThermostatDashboard.GraphPanel(newHistory(points));
+                TimeSeriesStore.View view = new TimeSeriesStore.View();
+                panel.store.readInto(view);
+                names.add(redraw);
+                ops.add(() -> {
+                    panel.drawDataLine(g2, view, TimeSeriesStore.SERIES_TEMP, Color.RED, 100.0, 0, 3L * points, 720, 420, 60, 20);
+                    return view.size();
+                });
+                // One new sample per frame on top of an existing history
+                TimeSeriesStore live = newHistory(points);
+                ThermostatDashboard.GraphPanel framePanel = new ThermostatDashboard.GraphPanel(live);
+                framePanel.setSize(800, 500);
+                long[] clock = {3L * points};
+                names.add(frame);
+                ops.add(() -> {
+                    clock[0] += 3;
+                    live.append(clock[0], 22.0, 55.0, 1.2);
+                    framePanel.followLatest();
+                    framePanel.paintComponent(g2);
+                    return clock[0];
+                });
+            }
+
+            for (int i = 0; i < names.size(); i++) {
+                if (!matches(names.get(i), filter)) continue;
+                Result result = measure(names.get(i), ops.get(i));
+                System.out.println(result);
+                results.add(result);
+            }
+            return results;
+        }
+
+        // The same six device types in every room, evaluated three ways: direct calls on concrete fields, a list of
+        // Actuators per room (one call site, six receiver classes) and a DeviceRegistry (one call site per type).
+        // All three take the setpoint as an argument and switch devices on and off as ThermostatDisplay.control() does.
+        static void addActuatorBenchmarks(List<String> names, List<Operation> ops) {
+            int rooms = 1000;
+            double desiredTemp = ControlPlane.SHARED.current().desiredTemp;
+            int[] people = new int[rooms];
+            double[] temp = new double[rooms];
+            double[] humidity = new double[rooms];
+            for (int r = 0; r < rooms; r++) {
+                people[r] = r % 21;
+                temp[r] = INPUTS[r & (INPUTS.length - 1)];
+                humidity[r] = INPUTS[(r * 7) & (INPUTS.length - 1)] + 20.0;
+            }
+            Actuator dehumidifier = h -> h > 60.0 ? 200.0 : 0.0;
+            AirConditioner[] acs = new AirConditioner[rooms];
+            SecondaryAirConditioner[] secondaryACs = new SecondaryAirConditioner[rooms];
+            Heater[] heaters = new Heater[rooms];
+            Humidifier[] humidifiers = new Humidifier[rooms];
+            SmartFan[] fans = new SmartFan[rooms];
+            List<List<Actuator>> perRoom = new ArrayList<>();
+            List<DeviceRegistry.Policy[]> perRoomPolicies = new ArrayList<>();
+            DeviceRegistry registry = new DeviceRegistry(rooms);
+            registry.setDesiredTemp(desiredTemp);
+            for (int r = 0; r < rooms; r++) {
+                acs[r] = new AirConditioner();
+                secondaryACs[r] = new SecondaryAirConditioner();
+                heaters[r] = new Heater();
+                humidifiers[r] = new Humidifier();
+                fans[r] = new SmartFan();
+                List<Actuator> devices = List.of(acs[r], secondaryACs[r], heaters[r], humidifiers[r], fans[r], dehumidifier);
+                perRoom.add(devices);
+                DeviceRegistry.Policy[] policies = new DeviceRegistry.Policy[devices.size()];
+                for (int d = 0; d < policies.length; d++) {
+                    policies[d] = DeviceRegistry.Policy.of(devices.get(d).getClass());
+                }
+                perRoomPolicies.add(policies);
+                for (Actuator device : devices) {
+                    registry.add(r, device, device == dehumidifier || device.readsHumidity());
+                }
+                registry.setReadings(r, people[r], temp[r], humidity[r]);
+            }
+            String size = "[" + rooms + " rooms x 6 types]";
+            names.add("Actuators.hardcoded" + size);
+            ops.add(() -> {
+                double total = 0.0;
+                for (int r = 0; r < rooms; r++) {
+                    double t = temp[r];
+                    double h = humidity[r];
+                    int p = people[r];
+                    if (t - desiredTemp > 0) {
+                        if (p > 0) total += acs[r].calculatePower(t, desiredTemp);
+                        if (p > 10) total += secondaryACs[r].calculatePower(t, desiredTemp);
+                    } else {
+                        total += heaters[r].calculatePower(t);
+                    }
+                    if (p >= 6) total += fans[r].calculatePower(t);
+                    total += humidifiers[r].calculatePower(h) + dehumidifier.calculatePower(h);
+                }
+                return total;
+            });
+            names.add("Actuators.perRoomList" + size);
+            ops.add(() -> {
+                double total = 0.0;
+                for (int r = 0; r < rooms; r++) {
+                    List<Actuator> devices = perRoom.get(r);
+                    DeviceRegistry.Policy[] policies = perRoomPolicies.get(r);
+                    for (int d = 0; d < policies.length; d++) {
+                        Actuator device = devices.get(d);
+                        double input = device.readsHumidity() || device == dehumidifier ? humidity[r] : temp[r];
+                        if (policies[d].enabled(people[r], temp[r], desiredTemp)) {
+                            total += device.calculatePower(input, desiredTemp);
+                        }
+                    }
+                }
+                return total;
+            });
+            names.add("DeviceRegistry.evaluate" + size);
+            ops.add(() -> {
+                registry.evaluate();
+                return registry.getTotalPower();
+            });
+        }
+
+        private static boolean matches(String name, String filter) {
+            return filter == null || name.contains(filter);
+        }
+
+        // Usage: TickBenchmarks [name filter]
+        public static void main(String[] args) {
+            System.setProperty("java.awt.headless", "true");
+            System.out.println(String.format("%-56s %20s %19s %13s", "Benchmark", "time", "gc.alloc.rate.norm", "gc.alloc.rate"));
+            runAll(args.length > 0 ? args[0] : null);
+        }
     }
-}
 private static ThermostatDisplay runningDisplay = null;
 public void stopDisplay() {
     // Overridden in anonymous class